@@ -10,4 +10,26 @@ public class XMLGitHubRepository {
     private String user;
     private String name;
     private XMLCredentials credentials;
+    private Markdown markdown;
+
+    public XMLGitHubRepository(String user, String name, XMLCredentials credentials) {
+
+        this(user, name, credentials, Markdown.API);
+    }
+
+    /**
+     * How references in the markdown of issues and comments get found.
+     */
+    public enum Markdown {
+
+        /**
+         * The markdown gets rendered by the GitHub API, references are read from the resulting HTML.
+         */
+        API,
+
+        /**
+         * References get extracted locally without any request.
+         */
+        LOCAL
+    }
 }
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * The {@link XMLParser} class contains two functions which parse the configuration file for the GitHub-Issues plugin.
@@ -33,13 +34,19 @@ public abstract class XMLParser {
         SAXBuilder builder = new SAXBuilder();
         Document document = builder.build(inputStream);
         for (Element repository : document.getRootElement().getChildren("github-repository")) {
+            XMLGitHubRepository.Markdown markdown = XMLGitHubRepository.Markdown.API;
+            if (repository.getChild("markdown") != null) {
+                markdown = parseEnum(repository, "markdown", XMLGitHubRepository.Markdown.class);
+            }
+
             repositoryList.add(new XMLGitHubRepository(
                 repository.getChildText("user"),
                 repository.getChildText("name"),
                 new XMLCredentials(
                     repository.getChild("credentials").getChildText("user"),
                     repository.getChild("credentials").getChildText("password")
-                )));
+                ),
+                markdown));
         }
 
         return repositoryList;
@@ -66,4 +73,122 @@ public abstract class XMLParser {
 
         return null;
     }
+
+    /**
+     * Parses the optional scan settings, see {@link XMLScanOptions}.
+     *
+     * @param inputStream The InputStream that shall be used.
+     * @return The scan options. Settings which are not specified keep their default value.
+     * @throws JDOMException If XML parsing failed.
+     * @throws IOException   If reading the config file failed.
+     */
+    public static XMLScanOptions parseScanOptions(InputStream inputStream) throws JDOMException, IOException {
+
+        SAXBuilder builder = new SAXBuilder();
+        Element root = builder.build(inputStream).getRootElement();
+
+        XMLScanOptions.XMLScanOptionsBuilder options = XMLScanOptions.builder();
+
+        if (root.getChild("comment-threads") != null) {
+            options.commentThreads(parsePositiveInt(root, "comment-threads"));
+        }
+        if (root.getChild("repository-threads") != null) {
+            options.repositoryThreads(parsePositiveInt(root, "repository-threads"));
+        }
+        if (root.getChild("thread-mode") != null) {
+            options.threadMode(parseEnum(root, "thread-mode", XMLScanOptions.ThreadMode.class));
+        }
+        if (root.getChild("comment-crawl") != null) {
+            options.commentCrawl(parseEnum(root, "comment-crawl", XMLScanOptions.CommentCrawl.class));
+        }
+        if (root.getChild("cache-directory") != null) {
+            options.cacheDirectory(root.getChildTextTrim("cache-directory"));
+        }
+        if (root.getChild("http-cache-size") != null) {
+            options.httpCacheSize(parsePositiveInt(root, "http-cache-size"));
+        }
+        if (root.getChild("http-connections") != null) {
+            options.httpConnections(parsePositiveInt(root, "http-connections"));
+        }
+        if (root.getChild("http-keep-alive") != null) {
+            options.httpKeepAlive(parsePositiveInt(root, "http-keep-alive"));
+        }
+        if (root.getChild("page-fan-out") != null) {
+            options.pageFanOut(parsePositiveInt(root, "page-fan-out"));
+        }
+        if (root.getChild("page-prefetch") != null) {
+            options.pagePrefetch(parseNonNegativeInt(root, "page-prefetch"));
+        }
+        if (root.getChild("unresolvable-reference-ttl") != null) {
+            options.unresolvableReferenceTtl(parseNonNegativeInt(root, "unresolvable-reference-ttl"));
+        }
+        if (root.getChild("engine") != null) {
+            options.engine(parseEnum(root, "engine", XMLScanOptions.Engine.class));
+        }
+        if (root.getChild("commit-issues") != null) {
+            options.commitIssues(parseNonNegativeInt(root, "commit-issues"));
+        }
+        if (root.getChild("commit-descriptors") != null) {
+            options.commitDescriptors(parseNonNegativeInt(root, "commit-descriptors"));
+        }
+        if (root.getChild("store-writer") != null) {
+            options.storeWriter(parseEnum(root, "store-writer", XMLScanOptions.StoreWriter.class));
+        }
+        if (root.getChild("incremental") != null) {
+            options.incremental(parseBoolean(root, "incremental"));
+        }
+
+        return options.build();
+    }
+
+    private static int parsePositiveInt(Element parent, String name) throws JDOMException {
+
+        String text = parent.getChildTextTrim(name);
+        try {
+            int value = Integer.parseInt(text);
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Handled below.
+        }
+        throw new JDOMException("<" + name + "> must be a positive number but was \"" + text + "\".");
+    }
+
+    private static int parseNonNegativeInt(Element parent, String name) throws JDOMException {
+
+        String text = parent.getChildTextTrim(name);
+        try {
+            int value = Integer.parseInt(text);
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Handled below.
+        }
+        throw new JDOMException("<" + name + "> must be 0 or a positive number but was \"" + text + "\".");
+    }
+
+    private static boolean parseBoolean(Element parent, String name) throws JDOMException {
+
+        String text = parent.getChildTextTrim(name);
+        if ("true".equals(text) || "false".equals(text)) {
+            return Boolean.parseBoolean(text);
+        }
+        throw new JDOMException("<" + name + "> must be \"true\" or \"false\" but was \"" + text + "\".");
+    }
+
+    /**
+     * Enum constants are written in lower case with dashes in the configuration file, e.g. "per-issue" for
+     * PER_ISSUE.
+     */
+    private static <E extends Enum<E>> E parseEnum(Element parent, String name, Class<E> type) throws JDOMException {
+
+        String text = parent.getChildTextTrim(name);
+        try {
+            return Enum.valueOf(type, text.toUpperCase(Locale.ENGLISH).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new JDOMException("<" + name + "> has the unknown value \"" + text + "\".");
+        }
+    }
 }
@@ -0,0 +1,168 @@
+package org.jqassistant.contrib.plugin.githubissues.jdom;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Optional settings from the plugin configuration file which tune how the repositories get scanned.
+ * <p>
+ * Every setting has a default value, so a configuration file without any of these elements behaves
+ * like before.
+ */
+@Builder
+@Getter
+public class XMLScanOptions {
+
+    /**
+     * The number of threads which request the comments of issues in parallel.
+     */
+    @Builder.Default
+    private int commentThreads = 4;
+
+    /**
+     * The number of repositories which get crawled in parallel.
+     */
+    @Builder.Default
+    private int repositoryThreads = 1;
+
+    /**
+     * Which threads crawl the issues.
+     */
+    @Builder.Default
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+
+    /**
+     * How the comments of a repository get requested.
+     */
+    @Builder.Default
+    private CommentCrawl commentCrawl = CommentCrawl.PER_ISSUE;
+
+    /**
+     * A directory in which data gets kept between scans, e.g. responses of the GitHub API. Nothing is kept if it is
+     * null.
+     */
+    private String cacheDirectory;
+
+    /**
+     * The maximum size of the cached API responses in megabytes.
+     */
+    @Builder.Default
+    private int httpCacheSize = 256;
+
+    /**
+     * The maximum number of open connections to the GitHub API.
+     */
+    @Builder.Default
+    private int httpConnections = 20;
+
+    /**
+     * How many seconds an idle connection to the GitHub API is kept open for the next request.
+     */
+    @Builder.Default
+    private int httpKeepAlive = 60;
+
+    /**
+     * How many pages of paginated lists are requested at the same time. With 1 the pages are requested one after
+     * another.
+     */
+    @Builder.Default
+    private int pageFanOut = 1;
+
+    /**
+     * How many pages of paginated lists are requested ahead of the page which is processed, if the pages are requested
+     * one after another. 0 disables the prefetch.
+     */
+    @Builder.Default
+    private int pagePrefetch = 1;
+
+    /**
+     * How many hours a referenced issue which couldn't be requested, or its repository, is skipped. 0 disables this.
+     */
+    @Builder.Default
+    private int unresolvableReferenceTtl = 24;
+
+    /**
+     * Which API of GitHub the repositories get crawled with.
+     */
+    @Builder.Default
+    private Engine engine = Engine.REST;
+
+    /**
+     * The transaction is committed after this many issues. 0 leaves the transaction to jQAssistant.
+     */
+    private int commitIssues;
+
+    /**
+     * The transaction is committed after this many new descriptors. 0 leaves the transaction to jQAssistant.
+     */
+    private int commitDescriptors;
+
+    /**
+     * How new issues get written to the store.
+     */
+    @Builder.Default
+    private StoreWriter storeWriter = StoreWriter.XO;
+
+    /**
+     * If true, only issues which were updated since the last scan of the same store get requested.
+     */
+    private boolean incremental;
+
+    public enum CommentCrawl {
+
+        /**
+         * One paginated request per issue.
+         */
+        PER_ISSUE,
+
+        /**
+         * Pages through all comments of the repository once and assigns them to their issues afterwards.
+         * This needs far less requests but keeps the comments of the whole repository in memory.
+         */
+        REPOSITORY
+    }
+
+    public enum ThreadMode {
+
+        /**
+         * The comments are requested by a pool of {@link #commentThreads} threads, everything else of an issue is
+         * done by the thread of its repository.
+         */
+        PLATFORM,
+
+        /**
+         * Every issue, including its comments, pull request and markdown, is crawled by a virtual thread of its own.
+         * How many issues are crawled at the same time depends on the rate limit. Before Java 21 a pool of
+         * {@link #commentThreads} threads is used instead.
+         */
+        VIRTUAL
+    }
+
+    public enum Engine {
+
+        /**
+         * The REST API (v3). Pull requests, comments and the rendering of markdown need requests of their own.
+         */
+        REST,
+
+        /**
+         * The GraphQL API (v4). Issues, pull requests, comments and the rendered markdown are requested together,
+         * page by page.
+         */
+        GRAPHQL
+    }
+
+    public enum StoreWriter {
+
+        /**
+         * Every node, property and relation is written through the XO descriptors.
+         */
+        XO,
+
+        /**
+         * New issues are written in batches by a few Cypher statements, issues which exist already are updated
+         * through the XO descriptors.
+         */
+        CYPHER
+    }
+}
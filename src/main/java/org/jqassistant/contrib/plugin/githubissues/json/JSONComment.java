@@ -12,6 +12,10 @@ public class JSONComment {
 
     private String body;
 
+    // Only set if the body was requested rendered, e.g. by the GraphQL API:
+    @JsonProperty("body_html")
+    private String bodyHtml;
+
     private JSONUser user;
 
     @JsonProperty("created_at")
@@ -19,4 +23,7 @@ public class JSONComment {
 
     @JsonProperty("updated_at")
     private String updatedAt;
+
+    @JsonProperty("issue_url")
+    private String issueUrl;
 }
@@ -18,6 +18,10 @@ public class JSONIssue {
 
     private String body;
 
+    // Only set if the body was requested rendered, e.g. by the GraphQL API:
+    @JsonProperty("body_html")
+    private String bodyHtml;
+
     private String state;
 
     private int number;
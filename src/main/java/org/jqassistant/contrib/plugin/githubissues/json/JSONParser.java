@@ -3,10 +3,13 @@ package org.jqassistant.contrib.plugin.githubissues.json;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The {@link JSONParser} class contains methods for every json response from the GitHub API that is
@@ -17,7 +20,7 @@ import java.util.List;
  */
 public class JSONParser {
 
-    private static JSONParser instance;
+    private static final JSONParser INSTANCE = new JSONParser();
     private ObjectMapper objectMapper;
 
     private JSONParser() {
@@ -29,16 +32,14 @@ public class JSONParser {
      * <p>
      * Json Parser is a singleton to avoid creating a {@link ObjectMapper} instance multiple times.
      * </p>
-     * Therefore, it needs a getInstance() method to retrieve the singleton instance.
+     * Therefore, it needs a getInstance() method to retrieve the singleton instance. The instance is created eagerly
+     * as it gets shared by the threads which request comments in parallel.
      *
      * @return The singleton instance.
      */
     public static JSONParser getInstance() {
 
-        if (instance == null) {
-            instance = new JSONParser();
-        }
-        return instance;
+        return INSTANCE;
     }
 
     /**
@@ -104,6 +105,21 @@ public class JSONParser {
         return objectMapper.readValue(json, JSONIssue.class);
     }
 
+    /**
+     * Parses a JSON array.
+     *
+     * @param json The JSON-string containing the array.
+     * @param type The class of the elements, one of the classes in
+     *             {@link org.jqassistant.contrib.plugin.githubissues.json}.
+     * @param <T>  The type of the elements.
+     * @return The parsed elements.
+     * @throws IOException If parsing failed.
+     */
+    public <T> List<T> parseArray(String json, Class<T> type) throws IOException {
+
+        return objectMapper.readValue(json, objectMapper.getTypeFactory().constructCollectionType(List.class, type));
+    }
+
     /**
      * Parses a {@link JSONMarkdownRequest} to a JSON-string..
      *
@@ -115,4 +131,34 @@ public class JSONParser {
 
         return objectMapper.writeValueAsString(jsonMarkdownRequest);
     }
+
+    /**
+     * Parses a JSON-String to a tree. This is used for responses of the GraphQL API whose structure depends on the
+     * query.
+     *
+     * @param json The JSON-string.
+     * @return The root of the tree.
+     * @throws IOException If parsing failed.
+     */
+    public JsonNode parseTree(String json) throws IOException {
+
+        return objectMapper.readTree(json);
+    }
+
+    /**
+     * Creates the payload of a GraphQL request.
+     *
+     * @param query     The query.
+     * @param variables The values of the variables used by the query.
+     * @return A JSON-string representing the request.
+     * @throws JsonProcessingException If JSON processing fails.
+     */
+    public String parseGraphQLRequest(String query, Map<String, Object> variables) throws JsonProcessingException {
+
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("query", query);
+        request.put("variables", variables);
+
+        return objectMapper.writeValueAsString(request);
+    }
 }
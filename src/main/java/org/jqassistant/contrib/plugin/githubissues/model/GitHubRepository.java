@@ -7,6 +7,7 @@ import com.buschmais.xo.neo4j.api.annotation.Label;
 import com.buschmais.xo.neo4j.api.annotation.Property;
 import com.buschmais.xo.neo4j.api.annotation.Relation;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 
 @Label("Repository")
@@ -24,6 +25,10 @@ public interface GitHubRepository extends GitHub, Descriptor, NamedDescriptor {
     String getName();
     void setName(String name);
 
+    @Property("issuesUpdatedAt")
+    ZonedDateTime getIssuesUpdatedAt();
+    void setIssuesUpdatedAt(ZonedDateTime issuesUpdatedAt);
+
     @Relation("HAS_ISSUE")
     List<GitHubIssue> getContains();
 
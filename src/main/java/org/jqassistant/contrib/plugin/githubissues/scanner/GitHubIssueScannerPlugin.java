@@ -9,6 +9,7 @@ import com.buschmais.jqassistant.plugin.common.api.scanner.filesystem.FileResour
 import org.jdom2.JDOMException;
 import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
 import org.jqassistant.contrib.plugin.githubissues.jdom.XMLParser;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLScanOptions;
 import org.jqassistant.contrib.plugin.githubissues.model.GitHubIssuesConfigurationFile;
 import org.jqassistant.contrib.plugin.githubissues.toolbox.cache.CacheEndpoint;
 import org.slf4j.Logger;
@@ -89,9 +90,11 @@ public class GitHubIssueScannerPlugin extends AbstractScannerPlugin<FileResource
 
         // Read the configuration file:
         List<XMLGitHubRepository> xmlRepositoryList;
+        XMLScanOptions scanOptions;
         String apiUrl = null;
         try {
             xmlRepositoryList = XMLParser.parseConfiguration(item.createStream());
+            scanOptions = XMLParser.parseScanOptions(item.createStream());
             apiUrl = XMLParser.parseApiUrl(item.createStream());
         } catch (JDOMException e) {
             LOGGER.error(path + " could not be parsed. Error:", e);
@@ -112,7 +115,7 @@ public class GitHubIssueScannerPlugin extends AbstractScannerPlugin<FileResource
             .addDescriptorType(fileDescriptor, GitHubIssuesConfigurationFile.class);
 
         // Start traversing the repositories
-        GraphBuilder graphBuilder = new GraphBuilder(this.apiUrl, cacheEndpoint);
+        GraphBuilder graphBuilder = new GraphBuilder(this.apiUrl, scanOptions, cacheEndpoint);
 
         graphBuilder.startTraversal(gitHubIssuesConfigurationFile, xmlRepositoryList);
 
@@ -4,18 +4,40 @@ import com.buschmais.jqassistant.core.scanner.api.Scanner;
 import com.buschmais.jqassistant.core.scanner.api.Scope;
 import com.buschmais.jqassistant.plugin.common.api.scanner.filesystem.FileResource;
 import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLScanOptions;
 import org.jqassistant.contrib.plugin.githubissues.json.*;
 import org.jqassistant.contrib.plugin.githubissues.model.*;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.HttpTransport;
 import org.jqassistant.contrib.plugin.githubissues.toolbox.MarkdownParser;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.MarkdownReferences;
 import org.jqassistant.contrib.plugin.githubissues.toolbox.RequestFailedException;
 import org.jqassistant.contrib.plugin.githubissues.toolbox.RestTool;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.VirtualThreads;
 import org.jqassistant.contrib.plugin.githubissues.toolbox.cache.CacheEndpoint;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.cache.CypherIssueWriter;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.cache.HttpResponseCache;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.cache.MarkdownReferenceCache;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.cache.UnresolvableReferenceCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The GraphBuilder gets build only once per execution of the GitHub-Issues plugin
@@ -24,21 +46,54 @@ import java.util.List;
  * It takes a list of specified repositories and starts to analyze them by following url paths.
  * <p>
  * The different tree depths are represented by the corresponding methods.
+ * <p>
+ * Repositories get crawled by a pool of worker threads, see {@link RepositoryCrawler}. The worker threads only talk
+ * to the GitHub API. Their results are passed through a bounded queue to the thread which called
+ * {@link #startTraversal(GitHubIssuesConfigurationFile, List)}, all descriptors get created and linked by this
+ * thread.
  */
 class GraphBuilder {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GraphBuilder.class);
 
+    /**
+     * How many crawled issues may wait to be written to the store.
+     */
+    private static final int WRITE_QUEUE_CAPACITY = 64;
+
+    /**
+     * How many issues of a repository may be crawled by virtual threads at the same time. The rate limit usually
+     * keeps the number lower.
+     */
+    private static final int MAX_VIRTUAL_THREADS_PER_REPOSITORY = 100;
+
+    /**
+     * How many new issues the {@link CypherIssueWriter} writes at once.
+     */
+    private static final int CYPHER_BATCH_SIZE = 500;
+
     private String apiUrl;
+    private XMLScanOptions scanOptions;
     private CacheEndpoint cacheEndpoint;
     private MarkdownParser markdownParser;
+    private HttpTransport httpTransport;
+    private HttpResponseCache responseCache;
+    private MarkdownReferenceCache referenceCache;
+    private UnresolvableReferenceCache unresolvableReferences;
+    private PipelineStatistics pipelineStatistics;
+    private TransactionBatches transactionBatches;
+    private CypherIssueWriter cypherIssueWriter;
+
+    // New issues which wait for the next batch of the CypherIssueWriter:
+    private List<BatchedIssue> batchedIssues = new ArrayList<>();
+
+    private int finishedRepositories;
 
-    GraphBuilder(String apiUrl, CacheEndpoint cacheEndpoint) {
+    GraphBuilder(String apiUrl, XMLScanOptions scanOptions, CacheEndpoint cacheEndpoint) {
 
         this.apiUrl = apiUrl;
+        this.scanOptions = scanOptions;
         this.cacheEndpoint = cacheEndpoint;
-
-        markdownParser = new MarkdownParser(cacheEndpoint);
     }
 
     /**
@@ -46,6 +101,8 @@ class GraphBuilder {
      * <p>
      * It takes a list of repository specifications and the root descriptor build by the
      * {@link GitHubIssueScannerPlugin}.
+     * <p>
+     * A repository which can't be scanned is reported but doesn't stop the scan of the other repositories.
      *
      * @param gitHubIssuesConfigurationFile The root descriptor which is also the root of the tree.
      * @param xmlGitHubRepositories         The list of repositories specified in the configuration file.
@@ -54,77 +111,358 @@ class GraphBuilder {
     void startTraversal(GitHubIssuesConfigurationFile gitHubIssuesConfigurationFile,
                         List<XMLGitHubRepository> xmlGitHubRepositories) throws IOException {
 
-        for (XMLGitHubRepository xmlGitHubRepository : xmlGitHubRepositories) {
+        ExecutorService commentExecutor = Executors.newFixedThreadPool(
+            scanOptions.getCommentThreads(), new WorkerThreadFactory("githubissues-worker-"));
+        ExecutorService repositoryExecutor = Executors.newFixedThreadPool(
+            scanOptions.getRepositoryThreads(), new WorkerThreadFactory("githubissues-repository-"));
+
+        // Whole issues are crawled in parallel, by virtual threads if the JVM has them:
+        ExecutorService issueExecutor = null;
+        int maxIssuesInFlight = 0;
+        if (scanOptions.getThreadMode() == XMLScanOptions.ThreadMode.VIRTUAL) {
+            issueExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            maxIssuesInFlight = MAX_VIRTUAL_THREADS_PER_REPOSITORY;
+            if (issueExecutor == null) {
+                LOGGER.info("Virtual threads need Java 21 or newer, the issues are crawled by "
+                    + scanOptions.getCommentThreads() + " threads instead.");
+                issueExecutor = commentExecutor;
+                maxIssuesInFlight = scanOptions.getCommentThreads();
+            }
+        }
+
+        // One connection pool for all repositories:
+        httpTransport = new HttpTransport(
+            scanOptions.getHttpConnections(),
+            scanOptions.getHttpKeepAlive(),
+            scanOptions.getPageFanOut(),
+            scanOptions.getPagePrefetch());
+
+        long unresolvableReferenceTtl = scanOptions.getUnresolvableReferenceTtl() * 60L * 60L * 1000L;
+
+        if (scanOptions.getCacheDirectory() != null) {
+            responseCache = new HttpResponseCache(
+                new File(scanOptions.getCacheDirectory(), "http"),
+                scanOptions.getHttpCacheSize() * 1024L * 1024L);
+            referenceCache = new MarkdownReferenceCache(
+                new File(scanOptions.getCacheDirectory(), "markdown-references.bin"));
+            unresolvableReferences = new UnresolvableReferenceCache(
+                new File(scanOptions.getCacheDirectory(), "unresolvable-references.bin"), unresolvableReferenceTtl);
+        } else {
+            referenceCache = new MarkdownReferenceCache();
+            unresolvableReferences = new UnresolvableReferenceCache(unresolvableReferenceTtl);
+        }
+
+        cacheEndpoint.setUnresolvableReferenceCache(unresolvableReferences);
+
+        pipelineStatistics = new PipelineStatistics(WRITE_QUEUE_CAPACITY, scanOptions.getRepositoryThreads());
+
+        markdownParser = new MarkdownParser(cacheEndpoint, referenceCache, apiUrl);
+        RepositoryCrawler repositoryCrawler;
+        if (scanOptions.getEngine() == XMLScanOptions.Engine.GRAPHQL) {
+            repositoryCrawler = new GraphQLRepositoryCrawler(markdownParser, pipelineStatistics);
+        } else {
+            repositoryCrawler = new RestRepositoryCrawler(
+                scanOptions, commentExecutor, issueExecutor, maxIssuesInFlight, markdownParser, pipelineStatistics);
+        }
+
+        // Descriptors of previous scans get updated instead of duplicated:
+        cacheEndpoint.loadStoredDescriptors();
+
+        transactionBatches = new TransactionBatches(
+            cacheEndpoint, scanOptions.getCommitIssues(), scanOptions.getCommitDescriptors());
 
-            LOGGER.info("GitHub-Issues plugin searches in repository \""
-                + xmlGitHubRepository.getUser() + "/" + xmlGitHubRepository.getName() + "\".");
+        if (scanOptions.getStoreWriter() == XMLScanOptions.StoreWriter.CYPHER) {
+            cypherIssueWriter = cacheEndpoint.createCypherIssueWriter();
+        }
+
+        BlockingQueue<StoreWrite> writes = new ArrayBlockingQueue<>(WRITE_QUEUE_CAPACITY);
+        finishedRepositories = 0;
+
+        try {
+            for (XMLGitHubRepository xmlGitHubRepository : xmlGitHubRepositories) {
+
+                LOGGER.info("GitHub-Issues plugin searches in repository \""
+                    + xmlGitHubRepository.getUser() + "/" + xmlGitHubRepository.getName() + "\".");
+
+                GitHubRepository gitHubRepository = cacheEndpoint.findOrCreateGitHubRepository(xmlGitHubRepository);
+
+                if (!gitHubIssuesConfigurationFile.getRepositories().contains(gitHubRepository)) {
+                    gitHubIssuesConfigurationFile.getRepositories().add(gitHubRepository);
+                }
+
+                RepositoryImport repositoryImport = new RepositoryImport(
+                    gitHubRepository,
+                    xmlGitHubRepository,
+                    new RestTool(apiUrl, xmlGitHubRepository, httpTransport, responseCache),
+                    scanOptions.isIncremental());
+
+                repositoryExecutor.execute(() -> repositoryLevel(repositoryCrawler, repositoryImport, writes));
+            }
+
+            // This is the only thread which writes to the store:
+            while (finishedRepositories < xmlGitHubRepositories.size()) {
+                StoreWrite write = take(writes);
+
+                long start = System.nanoTime();
+                write.write();
+                pipelineStatistics.record(PipelineStatistics.Stage.WRITE, start);
+                pipelineStatistics.logProgressIfDue();
+            }
+        } finally {
+            repositoryExecutor.shutdownNow();
+            commentExecutor.shutdownNow();
+            if (issueExecutor != null) {
+                issueExecutor.shutdownNow();
+            }
 
+            pipelineStatistics.logStatistics();
+            transactionBatches.logStatistics();
+            if (cypherIssueWriter != null) {
+                cypherIssueWriter.logStatistics();
+            }
+            cacheEndpoint.logStatistics();
+            httpTransport.logStatistics();
+            httpTransport.close();
 
-            GitHubRepository gitHubRepository = cacheEndpoint.findOrCreateGitHubRepository(xmlGitHubRepository);
+            if (responseCache != null) {
+                responseCache.logStatistics();
+            }
 
-            repositoryLevel(gitHubRepository, xmlGitHubRepository);
+            referenceCache.save();
+            referenceCache.logStatistics();
 
-            gitHubIssuesConfigurationFile.getRepositories().add(gitHubRepository);
+            unresolvableReferences.save();
+            unresolvableReferences.logStatistics();
         }
     }
 
     /**
-     * The method gets invoked once for every repository in a configuration file.
+     * @return The statistics of the last traversal.
+     */
+    PipelineStatistics getPipelineStatistics() {
+
+        return pipelineStatistics;
+    }
+
+    /**
+     * The method gets invoked once for every repository in a configuration file by a worker thread. It crawls the
+     * repository and queues the results for the thread which writes to the store.
      *
-     * @param gitHubRepository    The descriptor for the current repository.
-     * @param xmlGitHubRepository The xml configuration for the current repository.
-     * @throws IOException If parsing fails.
+     * @param repositoryCrawler The crawler.
+     * @param repositoryImport  The repository.
+     * @param writes            The queue of the thread which writes to the store.
      */
-    private void repositoryLevel(GitHubRepository gitHubRepository,
-                                 XMLGitHubRepository xmlGitHubRepository) throws IOException {
+    private void repositoryLevel(RepositoryCrawler repositoryCrawler,
+                                 RepositoryImport repositoryImport,
+                                 BlockingQueue<StoreWrite> writes) {
+
+        ZonedDateTime highWaterMark = null;
+        Throwable failure = null;
+
+        try {
+            highWaterMark = repositoryCrawler.crawl(repositoryImport, new RepositoryCrawler.Sink() {
+
+                @Override
+                public void milestones(List<JSONMilestone> jsonMilestones) throws InterruptedException {
+                    put(writes, repositoryImport, () -> milestoneLevel(jsonMilestones, repositoryImport));
+                }
+
+                @Override
+                public void issue(IssueBundle issueBundle) throws InterruptedException {
+                    put(writes, repositoryImport, () -> writeIssue(issueBundle, repositoryImport));
+                }
+            });
+        } catch (InterruptedException e) {
+            // The scan gets cancelled.
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception | Error e) {
+            failure = e;
+        }
 
-        RestTool restTool = new RestTool(apiUrl, xmlGitHubRepository);
+        ZonedDateTime finalHighWaterMark = highWaterMark;
+        Throwable finalFailure = failure;
+        try {
+            put(writes, repositoryImport, () -> finishRepository(repositoryImport, finalHighWaterMark, finalFailure));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        // Load and iterate over milestones
-        List<JSONMilestone> jsonMilestones = restTool.requestMilestonesByRepository(gitHubRepository);
+    /**
+     * Stores the starting point for the next incremental scan once all issues of a repository were written.
+     */
+    private void finishRepository(RepositoryImport repositoryImport,
+                                  ZonedDateTime highWaterMark,
+                                  Throwable failure) throws IOException {
+
+        finishedRepositories++;
+
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+
+        // The deferred references may point to issues of the batch:
+        writeBatchedIssues();
+        resolveDeferredReferences(repositoryImport);
+
+        if (failure != null) {
+            LOGGER.error("Couldn't scan repository \"" + repositoryImport.getName() + "\":", failure);
+            return;
+        }
+
+        if (repositoryImport.isWriteFailed()) {
+            LOGGER.error("Couldn't write repository \"" + repositoryImport.getName() + "\" completely, the next " +
+                "incremental scan starts where the previous one stopped.");
+            return;
+        }
+
+        repositoryImport.getGitHubRepository().setIssuesUpdatedAt(highWaterMark);
+    }
+
+    /**
+     * Links the milestones of a repository.
+     *
+     * @param jsonMilestones   The milestones as JSON POJOs.
+     * @param repositoryImport The repository.
+     */
+    private void milestoneLevel(List<JSONMilestone> jsonMilestones, RepositoryImport repositoryImport) {
 
         for (JSONMilestone jsonMilestone : jsonMilestones) {
 
             LOGGER.info("Importing milestone: \"" + jsonMilestone.getTitle() + "\"");
 
-            GitHubMilestone gitHubMilestone = cacheEndpoint.findOrCreateGitHubMilestone(jsonMilestone, xmlGitHubRepository);
+            GitHubMilestone gitHubMilestone = cacheEndpoint.findOrCreateGitHubMilestone(
+                jsonMilestone, repositoryImport.getXmlGitHubRepository());
 
-            gitHubRepository.getMilestones().add(gitHubMilestone);
+            if (repositoryImport.getStoredMilestones().add(gitHubMilestone)) {
+                repositoryImport.getGitHubRepository().getMilestones().add(gitHubMilestone);
+            }
         }
+    }
 
-        // Load and iterate over issues
-        List<JSONIssue> jsonIssues = restTool.requestIssuesByRepository(gitHubRepository);
+    /**
+     * This method gets invoked once for every crawled issue in a repository. New issues are batched for the
+     * {@link CypherIssueWriter} if it is enabled, all others are written right away.
+     */
+    private void writeIssue(IssueBundle issueBundle, RepositoryImport repositoryImport) throws IOException {
 
-        for (JSONIssue jsonIssue : jsonIssues) {
-            String id = xmlGitHubRepository.getUser() +
-                "/" + xmlGitHubRepository.getName() +
-                "#" + jsonIssue.getNumber();
+        JSONIssue jsonIssue = issueBundle.getJsonIssue();
 
-            LOGGER.info("Importing issue: " + id + ", \"" + jsonIssue.getTitle() + "\"");
+        LOGGER.info("Importing issue: " + repositoryImport.getName() + "#" + jsonIssue.getNumber() +
+            ", \"" + jsonIssue.getTitle() + "\"");
 
-            try {
-                GitHubIssue gitHubIssue = issueLevel(jsonIssue, xmlGitHubRepository, restTool);
-                gitHubRepository.getContains().add(gitHubIssue);
-            } catch (RequestFailedException e) {
-                LOGGER.warn("Couldn't import issue because of a REST failure:\n" + jsonIssue + "\n", e);
+        if (cypherIssueWriter != null &&
+            cacheEndpoint.findGitHubIssue(jsonIssue.getNumber(), repositoryImport.getXmlGitHubRepository()) == null) {
+
+            batchedIssues.add(new BatchedIssue(issueBundle, repositoryImport));
+            if (batchedIssues.size() >= CYPHER_BATCH_SIZE) {
+                writeBatchedIssues();
             }
+            return;
         }
+
+        issueLevel(issueBundle, repositoryImport);
+        transactionBatches.issueWritten();
     }
 
+    /**
+     * Writes the batched issues with the {@link CypherIssueWriter} and links their markdown references afterwards.
+     * Issues which the writer can't create, e.g. because they were listed twice, are written by
+     * {@link #issueLevel(IssueBundle, RepositoryImport)}.
+     */
+    private void writeBatchedIssues() throws IOException {
+
+        if (batchedIssues.isEmpty()) {
+            return;
+        }
+
+        List<BatchedIssue> batch = batchedIssues;
+        batchedIssues = new ArrayList<>();
+
+        List<BatchedIssue> written = new ArrayList<>();
+        List<BatchedIssue> rejected = new ArrayList<>();
+
+        for (BatchedIssue batchedIssue : batch) {
+
+            IssueBundle issueBundle = batchedIssue.issueBundle;
+            RepositoryImport repositoryImport = batchedIssue.repositoryImport;
+
+            List<JSONComment> jsonComments = issueBundle.getJsonComments();
+            if (!issueBundle.isAllComments()) {
+                jsonComments = new ArrayList<>(jsonComments);
+                jsonComments.sort(Comparator.comparingLong(JSONComment::getId));
+            }
+
+            if (cypherIssueWriter.add(issueBundle.getJsonIssue(), issueBundle.getJsonPullRequest(), jsonComments,
+                repositoryImport.getGitHubRepository(), repositoryImport.getXmlGitHubRepository())) {
+                written.add(batchedIssue);
+            } else {
+                rejected.add(batchedIssue);
+            }
+        }
+
+        try {
+            cypherIssueWriter.flush();
+        } catch (RuntimeException e) {
+            // The batch may contain issues of several repositories:
+            for (BatchedIssue batchedIssue : batch) {
+                batchedIssue.repositoryImport.writeFailed();
+            }
+            throw e;
+        }
+
+        for (BatchedIssue batchedIssue : written) {
+
+            IssueBundle issueBundle = batchedIssue.issueBundle;
+            RepositoryImport repositoryImport = batchedIssue.repositoryImport;
+            XMLGitHubRepository xmlGitHubRepository = repositoryImport.getXmlGitHubRepository();
+
+            GitHubIssue gitHubIssue = cacheEndpoint.findGitHubIssue(
+                issueBundle.getJsonIssue().getNumber(), xmlGitHubRepository);
+            resolveReferences(issueBundle.getReferences(), gitHubIssue, repositoryImport);
+
+            List<JSONComment> jsonComments = issueBundle.getJsonComments();
+            for (int i = 0; i < jsonComments.size(); i++) {
+                resolveReferences(issueBundle.getCommentReferences().get(i),
+                    cacheEndpoint.findGitHubComment(jsonComments.get(i).getId(), xmlGitHubRepository),
+                    repositoryImport);
+            }
+
+            repositoryImport.getStoredIssues().add(gitHubIssue);
+        }
+        for (int i = 0; i < written.size(); i++) {
+            transactionBatches.issueWritten();
+        }
+
+        for (BatchedIssue batchedIssue : rejected) {
+            issueLevel(batchedIssue.issueBundle, batchedIssue.repositoryImport);
+            transactionBatches.issueWritten();
+        }
+    }
 
     /**
-     * This method gets invoked once for every issue in a repository.
+     * Writes an issue with XO.
+     * <p>
+     * If the issue was imported by a previous scan its relations get replaced by the current ones.
      *
-     * @param jsonIssue           The issue as JSON POJO.
-     * @param xmlGitHubRepository The xml configuration for the current repository.
-     * @param restTool            The RestTool which will be used to request further details.
+     * @param issueBundle      The issue and everything that was requested for it.
+     * @param repositoryImport The repository.
      * @throws IOException If parsing fails.
      */
-    private GitHubIssue issueLevel(JSONIssue jsonIssue,
-                                   XMLGitHubRepository xmlGitHubRepository,
-                                   RestTool restTool) throws IOException, RequestFailedException {
+    private void issueLevel(IssueBundle issueBundle, RepositoryImport repositoryImport) throws IOException {
+
+        JSONIssue jsonIssue = issueBundle.getJsonIssue();
+        XMLGitHubRepository xmlGitHubRepository = repositoryImport.getXmlGitHubRepository();
 
         GitHubIssue gitHubIssue = cacheEndpoint.findOrCreateGitHubIssue(jsonIssue, xmlGitHubRepository);
+        boolean stored = repositoryImport.getStoredIssues().contains(gitHubIssue);
+
+        if (stored) {
+            removeAll(gitHubIssue.getAssignees());
+            removeAll(gitHubIssue.getLabeles());
+            clearReferences(gitHubIssue);
+        }
 
         // Find existing user or let the store create a new one
         gitHubIssue.setCreatedBy(cacheEndpoint.findOrCreateGitHubUser(jsonIssue.getUser()));
@@ -133,19 +471,12 @@ class GraphBuilder {
         // Issues don't need to have an associated milestone.
         if (jsonIssue.getMilestone() != null) {
             gitHubIssue.setMilestone(cacheEndpoint.findOrCreateGitHubMilestone(jsonIssue.getMilestone(), xmlGitHubRepository));
+        } else if (stored) {
+            gitHubIssue.setMilestone(null);
         }
 
-        /*
-         Check if this issue is an pull-request.
-
-         If it is one the JSONPullRequest contains (only!) an URL pointing at more information about the pull-request.
-         Therefore, we need to make a call to the URL to get properties like the merge timestamp and the related
-         commit-sha.
-        */
-        if (jsonIssue.getPullRequest() != null) {
-
-            JSONIssue jsonPullRequest = restTool.requestPullRequestByAbsoluteUrl(
-                jsonIssue.getPullRequest().getUrl());
+        JSONIssue jsonPullRequest = issueBundle.getJsonPullRequest();
+        if (jsonPullRequest != null) {
 
             GitHubPullRequest gitHubPullRequest = (GitHubPullRequest) gitHubIssue;
 
@@ -175,35 +506,110 @@ class GraphBuilder {
             gitHubIssue.getLabeles().add(cacheEndpoint.findOrCreateGitHubLabel(jsonLabel));
         }
 
-        markdownParser.getReferencesInMarkdown(gitHubIssue.getBody(), gitHubIssue, xmlGitHubRepository, restTool);
+        resolveReferences(issueBundle.getReferences(), gitHubIssue, repositoryImport);
+
+        commentLevel(gitHubIssue, issueBundle, stored, repositoryImport);
+
+        if (repositoryImport.getStoredIssues().add(gitHubIssue)) {
+            repositoryImport.getGitHubRepository().getContains().add(gitHubIssue);
+        }
+    }
+
+    /**
+     * Links a descriptor to the descriptors its markdown references. References to issues of the same repository
+     * which weren't imported yet are resolved when the repository is finished, most of them get imported until then.
+     */
+    private void resolveReferences(MarkdownReferences references,
+                                   GitHubMarkdownPointer gitHubMarkdownPointer,
+                                   RepositoryImport repositoryImport) throws IOException {
+
+        for (int issueNumber : markdownParser.resolveReferences(references, gitHubMarkdownPointer,
+            repositoryImport.getXmlGitHubRepository(), repositoryImport.getRestTool(), true)) {
+
+            repositoryImport.getDeferredReferences().add(
+                new RepositoryImport.DeferredReference(gitHubMarkdownPointer, issueNumber));
+        }
+    }
+
+    /**
+     * Resolves the references to issues of the repository which were left out while its issues were imported. Only
+     * issues which weren't listed, e.g. because they were transferred, get requested.
+     */
+    private void resolveDeferredReferences(RepositoryImport repositoryImport) throws IOException {
+
+        XMLGitHubRepository xmlGitHubRepository = repositoryImport.getXmlGitHubRepository();
 
-        commentLevel(gitHubIssue, xmlGitHubRepository, restTool);
+        for (RepositoryImport.DeferredReference reference : repositoryImport.getDeferredReferences()) {
+            try {
+                GitHubIssue gitHubIssue = cacheEndpoint.findOrCreateGitHubIssue(
+                    xmlGitHubRepository.getUser(),
+                    xmlGitHubRepository.getName(),
+                    reference.getIssueNumber(),
+                    xmlGitHubRepository,
+                    repositoryImport.getRestTool());
 
-        return gitHubIssue;
+                if (gitHubIssue != null) {
+                    reference.getGitHubMarkdownPointer().getGitHubIssues().add(gitHubIssue);
+                }
+            } catch (RequestFailedException e) {
+                LOGGER.warn("Issue request failed:", e);
+            }
+        }
+        repositoryImport.getDeferredReferences().clear();
     }
 
     /**
      * Every issue can contain one or more comments.
+     * <p>
+     * The comments get linked in the order the API returned them. If only the comments which were updated since the
+     * last scan are known, they get merged into the stored list of comments.
      *
-     * @param gitHubIssue         The issue as descriptor.
-     * @param xmlGitHubRepository The xml configuration for the current repository.
-     * @param restTool            The RestTool which will be used to request further details.
+     * @param gitHubIssue      The issue as descriptor.
+     * @param issueBundle      The issue and everything that was requested for it.
+     * @param stored           True if the issue was imported by a previous scan.
+     * @param repositoryImport The repository.
      * @throws IOException If parsing fails.
      */
     private void commentLevel(GitHubIssue gitHubIssue,
-                              XMLGitHubRepository xmlGitHubRepository,
-                              RestTool restTool) throws IOException {
+                              IssueBundle issueBundle,
+                              boolean stored,
+                              RepositoryImport repositoryImport) throws IOException {
 
-        List<JSONComment> jsonComments = restTool.requestCommentsByIssue(gitHubIssue);
+        List<JSONComment> fetched = issueBundle.getJsonComments();
+        boolean allComments = issueBundle.isAllComments();
 
-        GitHubComment last = null;
-        for (JSONComment jsonComment : jsonComments) {
+        if (stored && !allComments && fetched.isEmpty()) {
+            return;
+        }
+
+        List<GitHubComment> previous = stored ? getComments(gitHubIssue) : Collections.emptyList();
 
-            GitHubComment comment = cacheEndpoint.findOrCreateGitHubComment(jsonComment, xmlGitHubRepository);
+        List<GitHubComment> comments = new ArrayList<>();
+        for (int i = 0; i < fetched.size(); i++) {
 
-            markdownParser.getReferencesInMarkdown(comment.getBody(), comment, xmlGitHubRepository, restTool);
+            GitHubComment comment = cacheEndpoint.findOrCreateGitHubComment(
+                fetched.get(i), repositoryImport.getXmlGitHubRepository());
 
-            // Create a list of comments, each pointing at the next one.
+            clearReferences(comment);
+            resolveReferences(issueBundle.getCommentReferences().get(i), comment, repositoryImport);
+
+            comments.add(comment);
+        }
+
+        if (!allComments) {
+            Set<GitHubComment> merged = new HashSet<>(comments);
+            for (GitHubComment comment : previous) {
+                if (merged.add(comment)) {
+                    comments.add(comment);
+                }
+            }
+            comments.sort(Comparator.comparingLong(GitHubComment::getCommentId));
+        }
+
+        // Create a list of comments, each pointing at the next one.
+        removeAll(gitHubIssue.getCommented());
+        GitHubComment last = null;
+        for (GitHubComment comment : comments) {
             if (last == null) {
                 gitHubIssue.getCommented().add(comment);
             } else {
@@ -211,5 +617,121 @@ class GraphBuilder {
             }
             last = comment;
         }
+        if (last != null) {
+            last.setComment(null);
+        }
+
+        // Comments which were deleted on GitHub don't point into the list anymore:
+        for (GitHubComment comment : previous) {
+            if (!comments.contains(comment)) {
+                comment.setComment(null);
+            }
+        }
+    }
+
+    private static List<GitHubComment> getComments(GitHubIssue gitHubIssue) {
+
+        List<GitHubComment> comments = new ArrayList<>();
+        for (GitHubComment comment : gitHubIssue.getCommented()) {
+            for (GitHubComment next = comment; next != null && !comments.contains(next); next = next.getComment()) {
+                comments.add(next);
+            }
+        }
+        return comments;
+    }
+
+    /**
+     * The collections of XO don't support {@link Collection#clear()}, relations must be removed one by one.
+     */
+    private static <T> void removeAll(Collection<T> relations) {
+
+        for (T relation : new ArrayList<>(relations)) {
+            relations.remove(relation);
+        }
+    }
+
+    private static void clearReferences(GitHubMarkdownPointer descriptor) {
+
+        removeAll(descriptor.getGitHubIssues());
+        removeAll(descriptor.getGitHubCommits());
+        removeAll(descriptor.getGitHubUsers());
+    }
+
+    /**
+     * Hands a write of a repository to the store writer. Blocks while the queue is full, so the crawlers can't run
+     * away from the store. If the write fails, only the repository gets marked as failed and the writes of all other
+     * repositories go on.
+     */
+    private void put(BlockingQueue<StoreWrite> writes,
+                     RepositoryImport repositoryImport,
+                     StoreWrite write) throws InterruptedException {
+
+        long start = System.nanoTime();
+        writes.put(() -> {
+            try {
+                write.write();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Couldn't write to the store for repository \"" + repositoryImport.getName() + "\":", e);
+                repositoryImport.writeFailed();
+            }
+        });
+        pipelineStatistics.recordPut(start, writes.size());
+    }
+
+    private StoreWrite take(BlockingQueue<StoreWrite> writes) throws IOException {
+
+        long start = System.nanoTime();
+        try {
+            StoreWrite write = writes.take();
+            pipelineStatistics.recordTake(start, writes.size());
+            return write;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the GitHub API.");
+        }
+    }
+
+    /**
+     * A change of the store which was prepared by a worker thread.
+     */
+    private interface StoreWrite {
+
+        void write() throws IOException;
+    }
+
+    /**
+     * A new issue which waits for the next batch of the {@link CypherIssueWriter}.
+     */
+    private static class BatchedIssue {
+
+        private final IssueBundle issueBundle;
+        private final RepositoryImport repositoryImport;
+
+        BatchedIssue(IssueBundle issueBundle, RepositoryImport repositoryImport) {
+
+            this.issueBundle = issueBundle;
+            this.repositoryImport = repositoryImport;
+        }
+    }
+
+    /**
+     * Creates daemon threads so a stuck request can't keep jQAssistant from terminating.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        WorkerThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
@@ -0,0 +1,152 @@
+package org.jqassistant.contrib.plugin.githubissues.scanner;
+
+import org.jqassistant.contrib.plugin.githubissues.json.JSONComment;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONIssue;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.GraphQLIssue;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.GraphQLIssueIterator;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.GraphQLTool;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.MarkdownParser;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.MarkdownReferences;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.RequestFailedException;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.RestTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The GraphQLRepositoryCrawler requests everything the plugin imports for one repository from the GraphQL API of
+ * GitHub.
+ * <p>
+ * One query returns a page of issues including their comments, the merge data of pull requests and the rendered
+ * markdown. Only issues with more comments than fit into the page need further queries. The rendered markdown
+ * replaces the requests to the markdown endpoint of the REST API.
+ */
+class GraphQLRepositoryCrawler implements RepositoryCrawler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphQLRepositoryCrawler.class);
+
+    private MarkdownParser markdownParser;
+    private PipelineStatistics pipelineStatistics;
+
+    /**
+     * @param markdownParser     The parser which finds references in markdown texts.
+     * @param pipelineStatistics Measures the fetch and the reference extraction.
+     */
+    GraphQLRepositoryCrawler(MarkdownParser markdownParser, PipelineStatistics pipelineStatistics) {
+
+        this.markdownParser = markdownParser;
+        this.pipelineStatistics = pipelineStatistics;
+    }
+
+    /**
+     * Crawls one repository.
+     * <p>
+     * Issues are requested in the order they were updated. In the incremental mode only issues which were updated
+     * since the last scan get requested. Issues which didn't change since the last scan are skipped.
+     *
+     * @param repositoryImport The repository.
+     * @param sink             Receives the results.
+     * @return The "updatedAt" timestamp of the last issue before the first one which couldn't be requested. The
+     * next incremental scan can start there.
+     * @throws IOException          If parsing fails or the issues can't be listed.
+     * @throws InterruptedException If the thread got interrupted.
+     */
+    @Override
+    public ZonedDateTime crawl(RepositoryImport repositoryImport, Sink sink) throws IOException, InterruptedException {
+
+        GraphQLTool graphQLTool = new GraphQLTool(
+            repositoryImport.getRestTool(), repositoryImport.getXmlGitHubRepository());
+
+        try {
+            sink.milestones(graphQLTool.requestMilestones());
+        } catch (RequestFailedException e) {
+            throw new IOException("Couldn't request the milestones of " + repositoryImport.getName() + ".", e);
+        }
+
+        ZonedDateTime since = repositoryImport.getSince();
+        if (since != null) {
+            LOGGER.info("Requesting issues of " + repositoryImport.getName() + " updated since " + since + ".");
+        }
+
+        int issues = 0;
+        int unchangedIssues = 0;
+
+        ZonedDateTime highWaterMark = repositoryImport.getIssuesUpdatedAt();
+        boolean failed = false;
+
+        GraphQLIssueIterator graphQLIssues = graphQLTool.requestIssues(since);
+        while (true) {
+
+            long start = System.nanoTime();
+            if (!graphQLIssues.hasNext()) {
+                break;
+            }
+            GraphQLIssue graphQLIssue = graphQLIssues.next();
+            pipelineStatistics.recordBusy(PipelineStatistics.Stage.FETCH, start);
+
+            JSONIssue jsonIssue = graphQLIssue.getJsonIssue();
+            issues++;
+
+            // Issues which didn't change since the last scan need no further requests:
+            if (repositoryImport.isUnchanged(jsonIssue)) {
+                unchangedIssues++;
+            } else {
+                try {
+                    sink.issue(issueLevel(graphQLIssue, graphQLTool, repositoryImport));
+                } catch (RequestFailedException e) {
+                    LOGGER.warn("Couldn't import issue because of a GraphQL failure:\n" + jsonIssue + "\n", e);
+                    failed = true;
+                }
+            }
+
+            ZonedDateTime updatedAt = ZonedDateTime.parse(jsonIssue.getUpdatedAt());
+            if (!failed && (highWaterMark == null || updatedAt.isAfter(highWaterMark))) {
+                highWaterMark = updatedAt;
+            }
+        }
+
+        LOGGER.info(unchangedIssues + " of " + issues + " issues of " +
+            repositoryImport.getName() + " are unchanged since the last scan.");
+
+        return highWaterMark;
+    }
+
+    /**
+     * Requests the remaining comments of an issue and finds the references in its markdown texts.
+     */
+    private IssueBundle issueLevel(GraphQLIssue graphQLIssue,
+                                   GraphQLTool graphQLTool,
+                                   RepositoryImport repositoryImport) throws IOException, RequestFailedException {
+
+        RestTool restTool = repositoryImport.getRestTool();
+        JSONIssue jsonIssue = graphQLIssue.getJsonIssue();
+
+        long start = System.nanoTime();
+        MarkdownReferences references = markdownParser.extractReferences(
+            jsonIssue.getBody(), jsonIssue.getBodyHtml(), repositoryImport.getXmlGitHubRepository(), restTool);
+        markdownParser.prefetchReferencedIssues(references, repositoryImport.getXmlGitHubRepository(), restTool);
+        pipelineStatistics.recordBusy(PipelineStatistics.Stage.EXTRACT, start);
+
+        start = System.nanoTime();
+        List<JSONComment> comments = graphQLTool.requestRemainingComments(graphQLIssue);
+        pipelineStatistics.record(PipelineStatistics.Stage.FETCH, start);
+
+        start = System.nanoTime();
+        List<MarkdownReferences> commentReferences = new ArrayList<>();
+        for (JSONComment jsonComment : comments) {
+            MarkdownReferences jsonCommentReferences = markdownParser.extractReferences(
+                jsonComment.getBody(), jsonComment.getBodyHtml(), repositoryImport.getXmlGitHubRepository(), restTool);
+            markdownParser.prefetchReferencedIssues(
+                jsonCommentReferences, repositoryImport.getXmlGitHubRepository(), restTool);
+            commentReferences.add(jsonCommentReferences);
+        }
+        pipelineStatistics.record(PipelineStatistics.Stage.EXTRACT, start);
+
+        return new IssueBundle(jsonIssue, references, graphQLIssue.getJsonPullRequest(), comments, commentReferences,
+            true);
+    }
+}
@@ -0,0 +1,42 @@
+package org.jqassistant.contrib.plugin.githubissues.scanner;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONComment;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONIssue;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.MarkdownReferences;
+
+import java.util.List;
+
+/**
+ * Everything the {@link RepositoryCrawler} requested for one issue. It gets handed over to the thread which writes
+ * to the store.
+ */
+@AllArgsConstructor
+@Getter
+class IssueBundle {
+
+    private JSONIssue jsonIssue;
+
+    /**
+     * The references in the body of the issue.
+     */
+    private MarkdownReferences references;
+
+    /**
+     * The details of the pull request, null if the issue isn't one.
+     */
+    private JSONIssue jsonPullRequest;
+
+    private List<JSONComment> jsonComments;
+
+    /**
+     * The references in the bodies of the comments, in the same order as the comments.
+     */
+    private List<MarkdownReferences> commentReferences;
+
+    /**
+     * False if only the comments which were updated since the last scan were requested.
+     */
+    private boolean allComments;
+}
@@ -0,0 +1,219 @@
+package org.jqassistant.contrib.plugin.githubissues.scanner;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Measures the stages an issue passes on its way into the store, to find out which one limits the scan.
+ * </p>
+ * The stages are:
+ * <ul>
+ * <li>{@link Stage#FETCH}: requesting and parsing the issues, their comments and pull requests,</li>
+ * <li>{@link Stage#EXTRACT}: finding the references in the markdown texts,</li>
+ * <li>{@link Stage#WRITE}: creating and linking the descriptors, done by a single thread.</li>
+ * </ul>
+ * The crawlers hand their results to the store writer through a bounded queue. If the queue is full, the crawlers
+ * wait for the store writer, if it is empty, the store writer waits for the crawlers. Both waits are measured, as
+ * well as the depth of the queue. As several crawlers may wait at the same time, their waits are averaged over the
+ * crawler threads before they are compared with the wait of the store writer.
+ * <p>
+ * Every stage counts its items and the time the threads spent in it. Stages which run on several threads at once
+ * may therefore be busy for longer than the scan took.
+ * <p>
+ * This class is thread-safe.
+ */
+class PipelineStatistics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineStatistics.class);
+
+    /**
+     * How often the progress is logged while the scan is running.
+     */
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    enum Stage {
+
+        FETCH("fetch"),
+        EXTRACT("reference extraction"),
+        WRITE("store write");
+
+        private final String description;
+
+        Stage(String description) {
+            this.description = description;
+        }
+    }
+
+    private final Map<Stage, AtomicLong> items = new EnumMap<>(Stage.class);
+    private final Map<Stage, AtomicLong> busyNanos = new EnumMap<>(Stage.class);
+
+    private final int queueCapacity;
+    private final int crawlerThreads;
+    private final AtomicLong queueSamples = new AtomicLong();
+    private final AtomicLong queueDepthSum = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+    private final AtomicLong fullQueueNanos = new AtomicLong();
+    private final AtomicLong emptyQueueNanos = new AtomicLong();
+
+    private final long startNanos = System.nanoTime();
+    private volatile long nextProgressNanos = startNanos + PROGRESS_INTERVAL_NANOS;
+
+    /**
+     * @param queueCapacity  The capacity of the queue in front of the store writer.
+     * @param crawlerThreads The number of threads which hand their results to the store writer.
+     */
+    PipelineStatistics(int queueCapacity, int crawlerThreads) {
+
+        this.queueCapacity = queueCapacity;
+        this.crawlerThreads = crawlerThreads;
+        for (Stage stage : Stage.values()) {
+            items.put(stage, new AtomicLong());
+            busyNanos.put(stage, new AtomicLong());
+        }
+    }
+
+    /**
+     * Records that a stage finished an item.
+     *
+     * @param stage      The stage.
+     * @param startNanos The value of {@link System#nanoTime()} when the stage started the item.
+     */
+    void record(Stage stage, long startNanos) {
+
+        items.get(stage).incrementAndGet();
+        busyNanos.get(stage).addAndGet(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the time a stage spent on something which isn't an item of its own, e.g. the comments of an issue.
+     *
+     * @param stage      The stage.
+     * @param startNanos The value of {@link System#nanoTime()} when the stage started.
+     */
+    void recordBusy(Stage stage, long startNanos) {
+
+        busyNanos.get(stage).addAndGet(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records how long a crawler had to wait until the queue of the store writer had room.
+     *
+     * @param startNanos The value of {@link System#nanoTime()} when the crawler started to wait.
+     * @param depth      The depth of the queue after the crawler added its item.
+     */
+    void recordPut(long startNanos, int depth) {
+
+        fullQueueNanos.addAndGet(System.nanoTime() - startNanos);
+        sampleQueueDepth(depth);
+    }
+
+    /**
+     * Records how long the store writer had to wait for an item.
+     *
+     * @param startNanos The value of {@link System#nanoTime()} when the store writer started to wait.
+     * @param depth      The depth of the queue after the store writer took its item.
+     */
+    void recordTake(long startNanos, int depth) {
+
+        emptyQueueNanos.addAndGet(System.nanoTime() - startNanos);
+        sampleQueueDepth(depth);
+    }
+
+    private void sampleQueueDepth(int depth) {
+
+        queueSamples.incrementAndGet();
+        queueDepthSum.addAndGet(depth);
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    /**
+     * Logs the statistics if the last progress report is a while ago. Meant to be called by the store writer.
+     */
+    void logProgressIfDue() {
+
+        long now = System.nanoTime();
+        if (now - nextProgressNanos >= 0) {
+            nextProgressNanos = now + PROGRESS_INTERVAL_NANOS;
+            logStatistics();
+        }
+    }
+
+    /**
+     * Logs the throughput of every stage, how full the queue of the store writer was and which side waited for the
+     * other.
+     */
+    void logStatistics() {
+
+        double elapsedSeconds = seconds(System.nanoTime() - startNanos);
+
+        StringBuilder message = new StringBuilder("Pipeline after ")
+            .append(String.format("%.1f", elapsedSeconds)).append(" s:");
+
+        for (Stage stage : Stage.values()) {
+            long stageItems = items.get(stage).get();
+            double stageSeconds = seconds(busyNanos.get(stage).get());
+
+            message.append("\n  ").append(stage.description).append(": ").append(stageItems).append(" items, ")
+                .append(String.format("%.1f", stageSeconds)).append(" s busy, ")
+                .append(String.format("%.1f", stageSeconds > 0 ? stageItems / stageSeconds : 0)).append(" items/s");
+        }
+
+        message.append("\n  store write queue: ")
+            .append(String.format("%.1f", getAverageQueueDepth())).append(" average and ").append(getMaxQueueDepth())
+            .append(" maximum depth of ").append(queueCapacity)
+            .append(", crawlers waited ").append(String.format("%.1f", seconds(fullQueueNanos.get())))
+            .append(" s for the store writer, the store writer waited ")
+            .append(String.format("%.1f", seconds(emptyQueueNanos.get()))).append(" s for the crawlers.");
+
+        if (queueSamples.get() > 0) {
+            message.append("\n  The scan is limited by ").append(isLimitedByStoreWriter()
+                ? "the store writer."
+                : "the crawlers, see fetch and reference extraction.");
+        }
+
+        LOGGER.info(message.toString());
+    }
+
+    /**
+     * Decides which side of the queue limits the scan. The crawlers waited on the full queue on all of their threads
+     * at once, so the time a single crawler waited is compared with the time the store writer waited.
+     *
+     * @return <code>true</code> if the crawlers waited longer for the store writer than the other way round.
+     */
+    boolean isLimitedByStoreWriter() {
+
+        return fullQueueNanos.get() / crawlerThreads > emptyQueueNanos.get();
+    }
+
+    double getAverageQueueDepth() {
+
+        long samples = queueSamples.get();
+        return samples > 0 ? (double) queueDepthSum.get() / samples : 0;
+    }
+
+    long getMaxQueueDepth() {
+
+        return maxQueueDepth.get();
+    }
+
+    long getItems(Stage stage) {
+
+        return items.get(stage).get();
+    }
+
+    long getBusyNanos(Stage stage) {
+
+        return busyNanos.get(stage).get();
+    }
+
+    private static double seconds(long nanos) {
+
+        return nanos / 1e9;
+    }
+}
@@ -0,0 +1,39 @@
+package org.jqassistant.contrib.plugin.githubissues.scanner;
+
+import org.jqassistant.contrib.plugin.githubissues.json.JSONMilestone;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * A RepositoryCrawler requests everything the plugin imports for one repository from the GitHub API and finds the
+ * references in the markdown texts.
+ * <p>
+ * It never touches the store, so several repositories can be crawled at the same time. The results get handed over
+ * to a {@link Sink} in the order the issues were listed.
+ */
+interface RepositoryCrawler {
+
+    /**
+     * Crawls one repository.
+     *
+     * @param repositoryImport The repository.
+     * @param sink             Receives the results.
+     * @return The "updated_at" timestamp of the last issue before the first one which couldn't be requested. The
+     * next incremental scan can start there.
+     * @throws IOException          If parsing fails.
+     * @throws InterruptedException If the thread got interrupted.
+     */
+    ZonedDateTime crawl(RepositoryImport repositoryImport, Sink sink) throws IOException, InterruptedException;
+
+    /**
+     * Receives the results of a crawl.
+     */
+    interface Sink {
+
+        void milestones(List<JSONMilestone> jsonMilestones) throws InterruptedException;
+
+        void issue(IssueBundle issueBundle) throws InterruptedException;
+    }
+}
@@ -0,0 +1,141 @@
+package org.jqassistant.contrib.plugin.githubissues.scanner;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONIssue;
+import org.jqassistant.contrib.plugin.githubissues.model.GitHubIssue;
+import org.jqassistant.contrib.plugin.githubissues.model.GitHubMarkdownPointer;
+import org.jqassistant.contrib.plugin.githubissues.model.GitHubMilestone;
+import org.jqassistant.contrib.plugin.githubissues.model.GitHubRepository;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.RestTool;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state of one repository of the configuration file while it gets scanned.
+ * <p>
+ * The {@link RepositoryCrawler} only reads the values which were copied from the store before the crawl started.
+ * The descriptors must only be used by the thread which writes to the store.
+ */
+@Getter
+class RepositoryImport {
+
+    private final XMLGitHubRepository xmlGitHubRepository;
+    private final RestTool restTool;
+
+    /**
+     * Only issues updated since then get requested, null if all issues get requested.
+     */
+    private final ZonedDateTime since;
+
+    /**
+     * The high-water mark of the previous scan.
+     */
+    private final ZonedDateTime issuesUpdatedAt;
+
+    private final GitHubRepository gitHubRepository;
+    private final Set<GitHubIssue> storedIssues;
+    private final Set<GitHubMilestone> storedMilestones;
+
+    // Issue number -> version of the issue in the store.
+    private final Map<Integer, StoredIssue> storedIssueVersions = new HashMap<>();
+
+    /**
+     * References to issues of this repository which weren't imported when the referencing markdown was. They get
+     * resolved once all issues of the repository were imported.
+     */
+    private final List<DeferredReference> deferredReferences = new ArrayList<>();
+
+    /**
+     * True if a write to the store failed, the high-water mark must not move on then.
+     */
+    private boolean writeFailed;
+
+    /**
+     * Copies everything the crawl needs to know from the store. Must be called by the thread which writes to the
+     * store.
+     *
+     * @param gitHubRepository    The descriptor of the repository.
+     * @param xmlGitHubRepository The xml configuration of the repository.
+     * @param restTool            The RestTool for the repository.
+     * @param incremental         True if only issues updated since the last scan shall be requested.
+     */
+    RepositoryImport(GitHubRepository gitHubRepository,
+                     XMLGitHubRepository xmlGitHubRepository,
+                     RestTool restTool,
+                     boolean incremental) {
+
+        this.gitHubRepository = gitHubRepository;
+        this.xmlGitHubRepository = xmlGitHubRepository;
+        this.restTool = restTool;
+
+        this.issuesUpdatedAt = gitHubRepository.getIssuesUpdatedAt();
+        this.since = incremental ? issuesUpdatedAt : null;
+
+        this.storedIssues = new HashSet<>(gitHubRepository.getContains());
+        this.storedMilestones = new HashSet<>(gitHubRepository.getMilestones());
+
+        for (GitHubIssue gitHubIssue : storedIssues) {
+            if (gitHubIssue.getUpdatedAt() != null) {
+                storedIssueVersions.put(gitHubIssue.getNumber(),
+                    new StoredIssue(gitHubIssue.getUpdatedAt(), gitHubIssue.getComments()));
+            }
+        }
+    }
+
+    /**
+     * An issue is unchanged if it was imported by a previous scan and neither its "updated_at" timestamp nor its
+     * number of comments differ from the stored ones.
+     *
+     * @param jsonIssue The issue as listed by the GitHub API.
+     * @return True if the issue doesn't need to be requested again.
+     */
+    boolean isUnchanged(JSONIssue jsonIssue) {
+
+        StoredIssue storedIssue = storedIssueVersions.get(jsonIssue.getNumber());
+
+        return storedIssue != null &&
+            storedIssue.comments == jsonIssue.getComments() &&
+            storedIssue.updatedAt.isEqual(ZonedDateTime.parse(jsonIssue.getUpdatedAt()));
+    }
+
+    void writeFailed() {
+
+        writeFailed = true;
+    }
+
+    String getName() {
+
+        return xmlGitHubRepository.getUser() + "/" + xmlGitHubRepository.getName();
+    }
+
+    /**
+     * A reference from a descriptor with markdown to an issue of this repository.
+     */
+    @AllArgsConstructor
+    @Getter
+    static class DeferredReference {
+
+        private final GitHubMarkdownPointer gitHubMarkdownPointer;
+        private final int issueNumber;
+    }
+
+    private static class StoredIssue {
+
+        private final ZonedDateTime updatedAt;
+        private final int comments;
+
+        private StoredIssue(ZonedDateTime updatedAt, int comments) {
+
+            this.updatedAt = updatedAt;
+            this.comments = comments;
+        }
+    }
+}
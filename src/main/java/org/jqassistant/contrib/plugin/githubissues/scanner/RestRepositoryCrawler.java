@@ -0,0 +1,349 @@
+package org.jqassistant.contrib.plugin.githubissues.scanner;
+
+import lombok.AllArgsConstructor;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLScanOptions;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONComment;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONIssue;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONMilestone;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.Futures;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.MarkdownParser;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.MarkdownReferences;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.PageIterator;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.RequestFailedException;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.RestTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The RestRepositoryCrawler requests everything the plugin imports for one repository from the REST API of GitHub
+ * and finds the references in the markdown texts.
+ * <p>
+ * Besides the lists of issues and pull requests this needs at least one request per issue for the comments, unless
+ * all comments of the repository are requested at once.
+ */
+class RestRepositoryCrawler implements RepositoryCrawler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RestRepositoryCrawler.class);
+
+    /**
+     * How many comment requests per worker thread may be queued ahead of the current issue.
+     */
+    private static final int COMMENT_REQUESTS_PER_THREAD = 2;
+
+    /**
+     * How many issues may be read ahead of the current issue, one page.
+     */
+    private static final int MAX_READ_AHEAD = 100;
+
+    private XMLScanOptions scanOptions;
+    private ExecutorService commentExecutor;
+    private ExecutorService issueExecutor;
+    private int maxIssuesInFlight;
+    private MarkdownParser markdownParser;
+    private PipelineStatistics pipelineStatistics;
+
+    /**
+     * @param scanOptions        The scan settings of the configuration file.
+     * @param commentExecutor    The worker threads which request comments.
+     * @param issueExecutor      The threads which crawl whole issues or null if the issues are crawled by the thread
+     *                           of the repository.
+     * @param maxIssuesInFlight  How many issues may be crawled by the issueExecutor at the same time, if the rate limit
+     *                           allows it.
+     * @param markdownParser     The parser which finds references in markdown texts.
+     * @param pipelineStatistics Measures the fetch and the reference extraction.
+     */
+    RestRepositoryCrawler(XMLScanOptions scanOptions,
+                          ExecutorService commentExecutor,
+                          ExecutorService issueExecutor,
+                          int maxIssuesInFlight,
+                          MarkdownParser markdownParser,
+                          PipelineStatistics pipelineStatistics) {
+
+        this.scanOptions = scanOptions;
+        this.commentExecutor = commentExecutor;
+        this.issueExecutor = issueExecutor;
+        this.maxIssuesInFlight = maxIssuesInFlight;
+        this.markdownParser = markdownParser;
+        this.pipelineStatistics = pipelineStatistics;
+    }
+
+    /**
+     * Crawls one repository.
+     * <p>
+     * Issues are requested in the order they were updated. In the incremental mode only issues which were updated
+     * since the last scan get requested. Issues which didn't change since the last scan are skipped.
+     * <p>
+     * Issues are handed to the sink while the list of issues is still being received. Only the issues of the current
+     * page and those whose comments are requested ahead are held in memory.
+     * <p>
+     * With an issue executor the issues are crawled in parallel, as many as the rate limit allows. They are handed to
+     * the sink in the order of the list nevertheless.
+     *
+     * @param repositoryImport The repository.
+     * @param sink             Receives the results.
+     * @return The "updated_at" timestamp of the last issue before the first one which couldn't be requested. The
+     * next incremental scan can start there.
+     * @throws IOException          If parsing fails.
+     * @throws InterruptedException If the thread got interrupted.
+     */
+    @Override
+    public ZonedDateTime crawl(RepositoryImport repositoryImport, Sink sink) throws IOException, InterruptedException {
+
+        RestTool restTool = repositoryImport.getRestTool();
+
+        ZonedDateTime since = repositoryImport.getSince();
+        if (since != null) {
+            LOGGER.info("Requesting issues of " + repositoryImport.getName() + " updated since " + since + ".");
+        }
+
+        // The lists which are needed before the first issue don't depend on each other and are requested together:
+        CompletableFuture<List<JSONMilestone>> milestones = restTool.requestMilestonesByRepositoryAsync();
+
+        // The merge data of all pull requests, so they don't need a request each:
+        CompletableFuture<Map<Integer, JSONIssue>> pullRequestIndex =
+            restTool.requestPullRequestsByRepositoryAsync(since);
+
+        // Either all comments of the repository get loaded up front or the comments of the next issues get requested
+        // in the background while the current issue is crawled:
+        CompletableFuture<Map<Integer, List<JSONComment>>> repositoryComments =
+            scanOptions.getCommentCrawl() == XMLScanOptions.CommentCrawl.REPOSITORY
+                ? restTool.requestCommentsByRepositoryAsync(since)
+                : CompletableFuture.completedFuture(null);
+
+        Map<Integer, JSONIssue> pullRequests;
+        Map<Integer, List<JSONComment>> commentsByIssue;
+        try {
+            sink.milestones(Futures.await(milestones));
+            pullRequests = Futures.await(pullRequestIndex);
+            commentsByIssue = Futures.await(repositoryComments);
+        } catch (RequestFailedException e) {
+            // The lists only fail with an IOException, like their synchronous requests:
+            throw new IOException("GitHub API request failed.", e);
+        }
+
+        // With the repository crawl only the comments updated since the last scan are known:
+        boolean allComments = commentsByIssue == null || since == null;
+
+        int commentWindow = commentsByIssue == null
+            ? scanOptions.getCommentThreads() * COMMENT_REQUESTS_PER_THREAD
+            : 0;
+        Deque<PendingIssue> pendingIssues = new ArrayDeque<>();
+        int pendingRequests = 0;
+
+        int issues = 0;
+        int unchangedIssues = 0;
+
+        ZonedDateTime highWaterMark = repositoryImport.getIssuesUpdatedAt();
+        boolean failed = false;
+
+        try (PageIterator<JSONIssue> jsonIssues = restTool.requestIssuesByRepository(since)) {
+
+            while (true) {
+
+                // Without threads of their own the issues are limited by the threads requesting the comments:
+                int window = issueExecutor == null ? commentWindow : restTool.getConcurrencyLimit(maxIssuesInFlight);
+
+                // Read ahead to request the comments of the next issues:
+                while ((pendingIssues.isEmpty() || pendingRequests < window && pendingIssues.size() < MAX_READ_AHEAD)
+                    && hasNext(jsonIssues)) {
+
+                    long start = System.nanoTime();
+                    JSONIssue jsonIssue = jsonIssues.next();
+                    pipelineStatistics.recordBusy(PipelineStatistics.Stage.FETCH, start);
+                    issues++;
+
+                    // Issues which didn't change since the last scan need no further requests:
+                    Future<List<JSONComment>> jsonComments = null;
+                    Future<IssueBundle> issueBundle = null;
+                    if (repositoryImport.isUnchanged(jsonIssue)) {
+                        unchangedIssues++;
+                    } else if (issueExecutor != null) {
+                        Map<Integer, List<JSONComment>> knownComments = commentsByIssue;
+                        issueBundle = issueExecutor.submit(() -> issueLevel(
+                            jsonIssue,
+                            CompletableFuture.completedFuture(
+                                requestComments(jsonIssue, knownComments, restTool)),
+                            allComments, pullRequests, repositoryImport));
+                        pendingRequests++;
+                    } else if (commentsByIssue != null) {
+                        jsonComments = CompletableFuture.completedFuture(
+                            commentsByIssue.getOrDefault(jsonIssue.getNumber(), Collections.emptyList()));
+                    } else if (jsonIssue.getComments() == 0) {
+                        // A comment added since the list was requested updates the issue for the next scan:
+                        jsonComments = CompletableFuture.completedFuture(Collections.emptyList());
+                    } else {
+                        int issueNumber = jsonIssue.getNumber();
+                        int commentCount = jsonIssue.getComments();
+                        jsonComments = commentExecutor.submit(
+                            () -> restTool.requestCommentsByIssue(issueNumber, commentCount));
+                        pendingRequests++;
+                    }
+
+                    pendingIssues.add(new PendingIssue(jsonIssue, jsonComments, issueBundle));
+                }
+
+                PendingIssue pendingIssue = pendingIssues.poll();
+                if (pendingIssue == null) {
+                    break;
+                }
+
+                JSONIssue jsonIssue = pendingIssue.jsonIssue;
+
+                if (pendingIssue.issueBundle != null) {
+                    pendingRequests--;
+
+                    try {
+                        sink.issue(Futures.await(pendingIssue.issueBundle));
+                    } catch (RequestFailedException e) {
+                        LOGGER.warn("Couldn't import issue because of a REST failure:\n" + jsonIssue + "\n", e);
+                        failed = true;
+                    }
+                } else if (pendingIssue.jsonComments != null) {
+                    if (commentsByIssue == null) {
+                        pendingRequests--;
+                    }
+
+                    try {
+                        sink.issue(issueLevel(
+                            jsonIssue, pendingIssue.jsonComments, allComments, pullRequests, repositoryImport));
+                    } catch (RequestFailedException e) {
+                        LOGGER.warn("Couldn't import issue because of a REST failure:\n" + jsonIssue + "\n", e);
+                        failed = true;
+                    }
+                }
+
+                ZonedDateTime updatedAt = ZonedDateTime.parse(jsonIssue.getUpdatedAt());
+                if (!failed && (highWaterMark == null || updatedAt.isAfter(highWaterMark))) {
+                    highWaterMark = updatedAt;
+                }
+            }
+        }
+
+        LOGGER.info(unchangedIssues + " of " + issues + " issues of " +
+            repositoryImport.getName() + " are unchanged since the last scan.");
+
+        return highWaterMark;
+    }
+
+    /**
+     * Waits for the next page of the list of issues, if needed.
+     */
+    private boolean hasNext(PageIterator<JSONIssue> jsonIssues) throws IOException {
+
+        long start = System.nanoTime();
+        boolean hasNext = jsonIssues.hasNext();
+        pipelineStatistics.recordBusy(PipelineStatistics.Stage.FETCH, start);
+        return hasNext;
+    }
+
+    /**
+     * Requests the comments of an issue unless they are known already.
+     */
+    private List<JSONComment> requestComments(JSONIssue jsonIssue,
+                                              Map<Integer, List<JSONComment>> commentsByIssue,
+                                              RestTool restTool) throws IOException {
+
+        if (commentsByIssue != null) {
+            return commentsByIssue.getOrDefault(jsonIssue.getNumber(), Collections.emptyList());
+        }
+        if (jsonIssue.getComments() == 0) {
+            return Collections.emptyList();
+        }
+
+        long start = System.nanoTime();
+        List<JSONComment> jsonComments = restTool.requestCommentsByIssue(
+            jsonIssue.getNumber(), jsonIssue.getComments());
+        pipelineStatistics.recordBusy(PipelineStatistics.Stage.FETCH, start);
+        return jsonComments;
+    }
+
+    /**
+     * Requests the details of an issue and finds the references in its markdown texts.
+     */
+    private IssueBundle issueLevel(JSONIssue jsonIssue,
+                                   Future<List<JSONComment>> jsonComments,
+                                   boolean allComments,
+                                   Map<Integer, JSONIssue> pullRequests,
+                                   RepositoryImport repositoryImport) throws IOException, RequestFailedException {
+
+        RestTool restTool = repositoryImport.getRestTool();
+
+        /*
+         Check if this issue is an pull-request.
+
+         If it is one the JSONPullRequest contains (only!) an URL pointing at more information about the pull-request.
+         The merge timestamp and the related commit-sha are taken from the list of pull requests. Only pull requests
+         which are missing there, or which were updated after the list got requested, need a call to the URL. That
+         call is answered while the markdown texts are parsed.
+        */
+        CompletableFuture<JSONIssue> jsonPullRequest = CompletableFuture.completedFuture(null);
+        if (jsonIssue.getPullRequest() != null) {
+            JSONIssue mergeData = pullRequests.get(jsonIssue.getNumber());
+            if (mergeData == null || ZonedDateTime.parse(mergeData.getUpdatedAt())
+                .isBefore(ZonedDateTime.parse(jsonIssue.getUpdatedAt()))) {
+                jsonPullRequest = restTool.requestPullRequestByAbsoluteUrlAsync(jsonIssue.getPullRequest().getUrl());
+            } else {
+                jsonPullRequest = CompletableFuture.completedFuture(mergeData);
+            }
+        }
+
+        long start = System.nanoTime();
+        MarkdownReferences references = markdownParser.extractReferences(
+            jsonIssue.getBody(), repositoryImport.getXmlGitHubRepository(), restTool);
+        markdownParser.prefetchReferencedIssues(references, repositoryImport.getXmlGitHubRepository(), restTool);
+        pipelineStatistics.recordBusy(PipelineStatistics.Stage.EXTRACT, start);
+
+        start = System.nanoTime();
+        List<JSONComment> comments = Futures.await(jsonComments);
+        pipelineStatistics.recordBusy(PipelineStatistics.Stage.FETCH, start);
+
+        start = System.nanoTime();
+        List<MarkdownReferences> commentReferences = new ArrayList<>();
+        for (JSONComment jsonComment : comments) {
+            MarkdownReferences jsonCommentReferences = markdownParser.extractReferences(
+                jsonComment.getBody(), repositoryImport.getXmlGitHubRepository(), restTool);
+            markdownParser.prefetchReferencedIssues(
+                jsonCommentReferences, repositoryImport.getXmlGitHubRepository(), restTool);
+            commentReferences.add(jsonCommentReferences);
+        }
+        pipelineStatistics.record(PipelineStatistics.Stage.EXTRACT, start);
+
+        start = System.nanoTime();
+        JSONIssue jsonPullRequestDetails = Futures.await(jsonPullRequest);
+        pipelineStatistics.record(PipelineStatistics.Stage.FETCH, start);
+
+        return new IssueBundle(
+            jsonIssue, references, jsonPullRequestDetails, comments, commentReferences, allComments);
+    }
+
+    /**
+     * An issue which was read from the list of issues but not crawled yet.
+     */
+    @AllArgsConstructor
+    private static class PendingIssue {
+
+        private final JSONIssue jsonIssue;
+
+        /**
+         * The comments of the issue, null if the issue is unchanged or crawled by the issue executor.
+         */
+        private final Future<List<JSONComment>> jsonComments;
+
+        /**
+         * The crawled issue, null if the issue is unchanged or crawled by the thread of the repository.
+         */
+        private final Future<IssueBundle> issueBundle;
+    }
+}
@@ -0,0 +1,94 @@
+package org.jqassistant.contrib.plugin.githubissues.scanner;
+
+import org.jqassistant.contrib.plugin.githubissues.toolbox.cache.CacheEndpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Splits the import into several transactions.
+ * </p>
+ * Without batches every descriptor of a scan is held by one transaction until jQAssistant commits it, which takes a
+ * lot of heap for large repositories and makes the final commit slow. A batch is committed once it contains a
+ * number of issues or a number of newly created descriptors, whichever comes first.
+ * <p>
+ * Batches are only committed between two issues, so an issue is never committed half-way. The time of every commit
+ * is measured.
+ * <p>
+ * Like the {@link CacheEndpoint}, this may only be used by the thread which writes to the store.
+ */
+class TransactionBatches {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionBatches.class);
+
+    private final CacheEndpoint cacheEndpoint;
+    private final int maxIssues;
+    private final int maxDescriptors;
+
+    private int issues;
+    private int descriptorsAtStart;
+
+    private int commits;
+    private long commitNanos;
+    private long maxCommitNanos;
+
+    /**
+     * @param cacheEndpoint  The endpoint which writes to the store.
+     * @param maxIssues      A batch is committed after this many issues, 0 disables this.
+     * @param maxDescriptors A batch is committed after this many new descriptors, 0 disables this.
+     */
+    TransactionBatches(CacheEndpoint cacheEndpoint, int maxIssues, int maxDescriptors) {
+
+        this.cacheEndpoint = cacheEndpoint;
+        this.maxIssues = maxIssues;
+        this.maxDescriptors = maxDescriptors;
+        descriptorsAtStart = cacheEndpoint.getCreatedDescriptors();
+    }
+
+    /**
+     * Counts an issue which was written to the store and commits the batch if it is full.
+     */
+    void issueWritten() {
+
+        issues++;
+
+        int descriptors = cacheEndpoint.getCreatedDescriptors() - descriptorsAtStart;
+        if (maxIssues > 0 && issues >= maxIssues || maxDescriptors > 0 && descriptors >= maxDescriptors) {
+            commit();
+        }
+    }
+
+    private void commit() {
+
+        long start = System.nanoTime();
+        cacheEndpoint.commit();
+        long nanos = System.nanoTime() - start;
+
+        commits++;
+        commitNanos += nanos;
+        maxCommitNanos = Math.max(maxCommitNanos, nanos);
+
+        LOGGER.debug("Committed " + issues + " issues and " +
+            (cacheEndpoint.getCreatedDescriptors() - descriptorsAtStart) + " new descriptors in " +
+            TimeUnit.NANOSECONDS.toMillis(nanos) + " ms.");
+
+        issues = 0;
+        descriptorsAtStart = cacheEndpoint.getCreatedDescriptors();
+    }
+
+    /**
+     * Logs how many batches were committed and how long the commits took.
+     */
+    void logStatistics() {
+
+        if (maxIssues == 0 && maxDescriptors == 0) {
+            return;
+        }
+
+        LOGGER.info("Transactions: " + commits + " batches committed, " +
+            (commits > 0 ? TimeUnit.NANOSECONDS.toMillis(commitNanos / commits) : 0) + " ms average and " +
+            TimeUnit.NANOSECONDS.toMillis(maxCommitNanos) + " ms maximum commit time.");
+    }
+}
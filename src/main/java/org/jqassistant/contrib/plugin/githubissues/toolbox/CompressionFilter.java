@@ -0,0 +1,210 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <p>
+ * Asks the GitHub API for compressed responses and decodes them, so the rest of the plugin reads plain entities.
+ * </p>
+ * For every endpoint the filter counts the bytes received on the wire and the bytes after decoding. Endpoints are
+ * identified by their path without the repository and without numbers, e.g. "issues/{number}/comments".
+ */
+class CompressionFilter extends ClientFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompressionFilter.class);
+
+    private final Map<String, Traffic> trafficByEndpoint = new ConcurrentHashMap<>();
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+
+        request.getHeaders().putSingle("Accept-Encoding", "gzip, deflate");
+
+        ClientResponse response = getNext().handle(request);
+
+        if (!response.hasEntity()) {
+            return response;
+        }
+
+        Traffic traffic = trafficByEndpoint.computeIfAbsent(getEndpoint(request.getURI()), endpoint -> new Traffic());
+        traffic.responses.incrementAndGet();
+
+        InputStream wire = new CountingInputStream(response.getEntityInputStream(), traffic.wireBytes);
+        String encoding = response.getHeaders().getFirst("Content-Encoding");
+
+        try {
+            // An empty body isn't encoded, even if the header says so:
+            PushbackInputStream input = new PushbackInputStream(wire, 2);
+            int first = input.read();
+            if (first != -1) {
+                input.unread(first);
+            }
+
+            InputStream decoded;
+            if (first == -1) {
+                decoded = input;
+            } else if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+                decoded = new GZIPInputStream(input);
+            } else if ("deflate".equalsIgnoreCase(encoding)) {
+                decoded = inflate(input);
+            } else {
+                decoded = input;
+            }
+
+            response.getHeaders().remove("Content-Encoding");
+            response.setEntityInputStream(new CountingInputStream(decoded, traffic.decodedBytes));
+        } catch (IOException e) {
+            throw new ClientHandlerException("Couldn't decode the " + encoding + " encoded response.", e);
+        }
+
+        return response;
+    }
+
+    /**
+     * "deflate" should be a zlib stream, but some servers send raw deflate data. The zlib header tells them apart.
+     * <p>
+     * The {@link Inflater} is released when the stream gets closed. An {@link InflaterInputStream} only releases the
+     * inflaters it created itself, otherwise the native memory is only freed by the finalizer.
+     */
+    private static InputStream inflate(PushbackInputStream input) throws IOException {
+
+        int first = input.read();
+        int second = input.read();
+        if (second != -1) {
+            input.unread(second);
+        }
+        if (first != -1) {
+            input.unread(first);
+        }
+
+        boolean zlib = first != -1 && second != -1 && (first & 0x0F) == 8 && ((first << 8) | second) % 31 == 0;
+
+        Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(input, inflater) {
+
+            @Override
+            public void close() throws IOException {
+
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * @param uri The requested URI, e.g. "https://api.github.com/repos/octocat/Hello-World/issues/1347/comments".
+     * @return The endpoint, e.g. "issues/{number}/comments".
+     */
+    static String getEndpoint(URI uri) {
+
+        String path = uri.getPath() == null ? "" : uri.getPath();
+
+        int repos = path.indexOf("/repos/");
+        if (repos >= 0) {
+            // Skip owner and name of the repository:
+            String[] segments = path.substring(repos + "/repos/".length()).split("/", 3);
+            path = segments.length == 3 ? segments[2] : "";
+        } else {
+            path = path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        return path.replaceAll("(?<=^|/)\\d+(?=/|$)", "{number}")
+            .replaceAll("(?<=^|/)[0-9a-f]{40}(?=/|$)", "{sha}");
+    }
+
+    /**
+     * Logs the traffic of every endpoint.
+     */
+    void logStatistics() {
+
+        for (Map.Entry<String, Traffic> entry : new TreeMap<>(trafficByEndpoint).entrySet()) {
+
+            Traffic traffic = entry.getValue();
+            long wireBytes = traffic.wireBytes.get();
+            long decodedBytes = traffic.decodedBytes.get();
+
+            LOGGER.info("HTTP traffic of \"" + entry.getKey() + "\": " + traffic.responses.get() + " responses, " +
+                wireBytes + " bytes on the wire, " + decodedBytes + " bytes decoded" +
+                (wireBytes > 0 ? String.format(" (%.1fx)", (double) decodedBytes / wireBytes) : "") + ".");
+        }
+    }
+
+    long getWireBytes(String endpoint) {
+
+        Traffic traffic = trafficByEndpoint.get(endpoint);
+        return traffic == null ? 0 : traffic.wireBytes.get();
+    }
+
+    long getDecodedBytes(String endpoint) {
+
+        Traffic traffic = trafficByEndpoint.get(endpoint);
+        return traffic == null ? 0 : traffic.decodedBytes.get();
+    }
+
+    private static class Traffic {
+
+        private final AtomicLong responses = new AtomicLong();
+        private final AtomicLong wireBytes = new AtomicLong();
+        private final AtomicLong decodedBytes = new AtomicLong();
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong count;
+
+        CountingInputStream(InputStream in, AtomicLong count) {
+
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            int b = super.read();
+            if (b != -1) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count.addAndGet(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+
+            long skipped = super.skip(n);
+            count.addAndGet(skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Waits for requests which were handed to other threads, e.g. by the asynchronous request methods of the
+ * {@link RestTool} or the executors of the {@link HttpTransport}, and lets them fail like the request would have
+ * failed on the waiting thread.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Waits for a pending request.
+     *
+     * @param future The pending request.
+     * @param <T>    The type of the response.
+     * @return The response.
+     * @throws IOException            If the request failed or the current thread got interrupted while waiting.
+     * @throws RequestFailedException If the GitHub API rejected the request.
+     */
+    public static <T> T await(Future<T> future) throws IOException, RequestFailedException {
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a GitHub API request.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RequestFailedException) {
+                throw (RequestFailedException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("GitHub API request failed.", cause);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONComment;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONIssue;
+
+import java.util.List;
+
+/**
+ * An issue or pull request as it was listed by the {@link GraphQLTool}, together with the first page of its
+ * comments.
+ */
+@AllArgsConstructor
+@Getter
+public class GraphQLIssue {
+
+    private JSONIssue jsonIssue;
+
+    /**
+     * The merge data of a pull request, null if the issue is not a pull request.
+     */
+    private JSONIssue jsonPullRequest;
+
+    private List<JSONComment> jsonComments;
+
+    /**
+     * The GraphQL node ID which is needed to request more comments.
+     */
+    private String nodeId;
+
+    /**
+     * The cursor after the first page of comments, null if there are no more comments.
+     */
+    private String commentsCursor;
+}
@@ -0,0 +1,154 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Iterates over the issues and pull requests of a repository in the order they were last updated.
+ * </p>
+ * The GraphQL API lists issues and pull requests in two separate connections. Both are paged in ascending order and
+ * merged by their "updatedAt" timestamp.
+ * <p>
+ * Pull requests can't be filtered by their update time. For an incremental scan the pull requests are paged in
+ * descending order until the first one updated before the given time, the ones updated since are kept in memory.
+ */
+public class GraphQLIssueIterator {
+
+    private GraphQLTool graphQLTool;
+    private ZonedDateTime since;
+
+    private Source issues;
+    private Source pullRequests;
+
+    /**
+     * @param graphQLTool The tool which requests the pages.
+     * @param since       If set, only issues which were updated at or after this time get listed.
+     * @throws IOException If the pull requests updated since the given time can't be requested.
+     */
+    GraphQLIssueIterator(GraphQLTool graphQLTool, ZonedDateTime since) throws IOException {
+
+        this.graphQLTool = graphQLTool;
+        this.since = since;
+
+        issues = new Source(false);
+        pullRequests = since == null ? new Source(true) : new Source(requestPullRequestsSince());
+    }
+
+    /**
+     * @return True, if there is another issue.
+     * @throws IOException If a page of issues couldn't be requested.
+     */
+    public boolean hasNext() throws IOException {
+
+        return issues.peek() != null || pullRequests.peek() != null;
+    }
+
+    /**
+     * @return The issue which was updated least recently of those not returned yet.
+     * @throws IOException If a page of issues couldn't be requested.
+     */
+    public GraphQLIssue next() throws IOException {
+
+        GraphQLIssue issue = issues.peek();
+        GraphQLIssue pullRequest = pullRequests.peek();
+
+        if (issue == null && pullRequest == null) {
+            throw new NoSuchElementException();
+        }
+
+        // The timestamps are in UTC with the same format, so they can be compared as strings:
+        if (pullRequest == null || issue != null &&
+            issue.getJsonIssue().getUpdatedAt().compareTo(pullRequest.getJsonIssue().getUpdatedAt()) <= 0) {
+            return issues.poll();
+        }
+        return pullRequests.poll();
+    }
+
+    private List<GraphQLIssue> requestPullRequestsSince() throws IOException {
+
+        List<GraphQLIssue> updatedPullRequests = new ArrayList<>();
+
+        String cursor = null;
+        do {
+            JsonNode page = requestPage(cursor, true, false);
+            for (JsonNode node : page.path("nodes")) {
+                GraphQLIssue pullRequest = GraphQLTool.toIssue(node, true);
+                if (ZonedDateTime.parse(pullRequest.getJsonIssue().getUpdatedAt()).isBefore(since)) {
+                    Collections.reverse(updatedPullRequests);
+                    return updatedPullRequests;
+                }
+                updatedPullRequests.add(pullRequest);
+            }
+            cursor = GraphQLTool.nextCursor(page);
+        } while (cursor != null);
+
+        Collections.reverse(updatedPullRequests);
+        return updatedPullRequests;
+    }
+
+    private JsonNode requestPage(String cursor, boolean pullRequest, boolean ascending) throws IOException {
+
+        try {
+            if (pullRequest) {
+                return graphQLTool.requestPullRequestPage(cursor, ascending);
+            }
+            return graphQLTool.requestIssuePage(cursor, since);
+        } catch (RequestFailedException e) {
+            throw new IOException("Couldn't request the " + (pullRequest ? "pull requests" : "issues") + ".", e);
+        }
+    }
+
+    /**
+     * One of the two connections, requested page by page.
+     */
+    private class Source {
+
+        private final Deque<GraphQLIssue> buffer = new ArrayDeque<>();
+        private final boolean pullRequest;
+
+        private String cursor;
+        private boolean exhausted;
+
+        Source(boolean pullRequest) {
+
+            this.pullRequest = pullRequest;
+        }
+
+        /**
+         * A source which was requested completely already.
+         */
+        Source(List<GraphQLIssue> issues) {
+
+            this.pullRequest = true;
+            buffer.addAll(issues);
+            exhausted = true;
+        }
+
+        GraphQLIssue peek() throws IOException {
+
+            while (buffer.isEmpty() && !exhausted) {
+                JsonNode page = requestPage(cursor, pullRequest, true);
+                for (JsonNode node : page.path("nodes")) {
+                    buffer.add(GraphQLTool.toIssue(node, pullRequest));
+                }
+                cursor = GraphQLTool.nextCursor(page);
+                exhausted = cursor == null;
+            }
+            return buffer.peek();
+        }
+
+        GraphQLIssue poll() {
+
+            return buffer.poll();
+        }
+    }
+}
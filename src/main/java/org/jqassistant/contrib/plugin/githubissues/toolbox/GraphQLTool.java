@@ -0,0 +1,320 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+import org.jqassistant.contrib.plugin.githubissues.json.*;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>
+ * This class retrieves the issues of a repository from the GraphQL API of GitHub.
+ * </p>
+ * One query returns a page of issues with their labels, assignees, milestone, the first comments, the merge data of
+ * pull requests and the rendered bodies. The results are mapped to the same JSON POJOs the REST API produces, so they
+ * can be imported the same way.
+ * <p>
+ * Labels and assignees are limited to 100 per issue. Comments are paginated, see
+ * {@link #requestRemainingComments(GraphQLIssue)}.
+ *
+ * @see <a href="https://developer.github.com/v4/">GraphQL-API</a>
+ */
+public class GraphQLTool {
+
+    private static final int ISSUES_PER_PAGE = 50;
+    private static final int COMMENTS_PER_ISSUE = 50;
+
+    private static final String MILESTONE_FIELDS =
+        "number title description state createdAt updatedAt dueOn creator { login }";
+
+    private static final String COMMENT_FIELDS =
+        "databaseId body bodyHTML author { login } createdAt updatedAt";
+
+    private static final String ISSUE_FIELDS =
+        "id number title body bodyHTML state locked createdAt updatedAt author { login } " +
+            "milestone { " + MILESTONE_FIELDS + " } " +
+            "labels(first: 100) { nodes { name description } } " +
+            "assignees(first: 100) { nodes { login } } " +
+            "comments(first: " + COMMENTS_PER_ISSUE + ") { totalCount pageInfo { hasNextPage endCursor } " +
+            "nodes { " + COMMENT_FIELDS + " } }";
+
+    private static final String ISSUES_QUERY =
+        "query($owner: String!, $name: String!, $cursor: String, $since: DateTime) { " +
+            "repository(owner: $owner, name: $name) { " +
+            "issues(first: " + ISSUES_PER_PAGE + ", after: $cursor, " +
+            "orderBy: {field: UPDATED_AT, direction: ASC}, filterBy: {since: $since}) { " +
+            "pageInfo { hasNextPage endCursor } nodes { " + ISSUE_FIELDS + " } } } }";
+
+    private static final String PULL_REQUESTS_QUERY =
+        "query($owner: String!, $name: String!, $cursor: String, $direction: OrderDirection!) { " +
+            "repository(owner: $owner, name: $name) { " +
+            "pullRequests(first: " + ISSUES_PER_PAGE + ", after: $cursor, " +
+            "orderBy: {field: UPDATED_AT, direction: $direction}) { " +
+            "pageInfo { hasNextPage endCursor } nodes { " + ISSUE_FIELDS + " url mergedAt mergeCommit { oid } } } } }";
+
+    private static final String COMMENTS_QUERY =
+        "query($id: ID!, $cursor: String) { node(id: $id) { " +
+            "... on Issue { comments(first: 100, after: $cursor) { " +
+            "pageInfo { hasNextPage endCursor } nodes { " + COMMENT_FIELDS + " } } } " +
+            "... on PullRequest { comments(first: 100, after: $cursor) { " +
+            "pageInfo { hasNextPage endCursor } nodes { " + COMMENT_FIELDS + " } } } } }";
+
+    private static final String MILESTONES_QUERY =
+        "query($owner: String!, $name: String!, $cursor: String) { " +
+            "repository(owner: $owner, name: $name) { " +
+            "milestones(first: 100, after: $cursor) { " +
+            "pageInfo { hasNextPage endCursor } nodes { " + MILESTONE_FIELDS + " } } } }";
+
+    private RestTool restTool;
+    private XMLGitHubRepository xmlGitHubRepository;
+
+    /**
+     * @param restTool            The tool which sends the queries with the credentials of the repository.
+     * @param xmlGitHubRepository The repository which shall be requested.
+     */
+    public GraphQLTool(RestTool restTool, XMLGitHubRepository xmlGitHubRepository) {
+
+        this.restTool = restTool;
+        this.xmlGitHubRepository = xmlGitHubRepository;
+    }
+
+    /**
+     * Requests all milestones of the repository.
+     *
+     * @return The milestones as JSON-POJOs.
+     * @throws IOException            If parsing the response fails.
+     * @throws RequestFailedException If a query fails.
+     */
+    public List<JSONMilestone> requestMilestones() throws IOException, RequestFailedException {
+
+        List<JSONMilestone> jsonMilestones = new ArrayList<>();
+
+        String cursor = null;
+        do {
+            Map<String, Object> variables = repositoryVariables();
+            variables.put("cursor", cursor);
+
+            JsonNode milestones = restTool.requestGraphQL(MILESTONES_QUERY, variables)
+                .path("repository").path("milestones");
+
+            for (JsonNode milestone : milestones.path("nodes")) {
+                jsonMilestones.add(toMilestone(milestone));
+            }
+
+            cursor = nextCursor(milestones);
+        } while (cursor != null);
+
+        return jsonMilestones;
+    }
+
+    /**
+     * Requests the issues and pull requests of the repository, ordered by the time they were last updated.
+     *
+     * @param since If set, only issues which were updated at or after this time get requested.
+     * @return The issues, they are requested page by page while iterating.
+     * @throws IOException If the pull requests updated since the given time can't be requested.
+     */
+    public GraphQLIssueIterator requestIssues(ZonedDateTime since) throws IOException {
+
+        return new GraphQLIssueIterator(this, since);
+    }
+
+    /**
+     * Requests the comments of an issue which didn't fit into the page of issues.
+     *
+     * @param graphQLIssue The issue.
+     * @return All comments of the issue.
+     * @throws IOException            If parsing the response fails.
+     * @throws RequestFailedException If a query fails.
+     */
+    public List<JSONComment> requestRemainingComments(GraphQLIssue graphQLIssue) throws IOException, RequestFailedException {
+
+        List<JSONComment> jsonComments = new ArrayList<>(graphQLIssue.getJsonComments());
+
+        String cursor = graphQLIssue.getCommentsCursor();
+        while (cursor != null) {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("id", graphQLIssue.getNodeId());
+            variables.put("cursor", cursor);
+
+            JsonNode comments = restTool.requestGraphQL(COMMENTS_QUERY, variables).path("node").path("comments");
+
+            for (JsonNode comment : comments.path("nodes")) {
+                jsonComments.add(toComment(comment));
+            }
+
+            cursor = nextCursor(comments);
+        }
+
+        return jsonComments;
+    }
+
+    /**
+     * Requests one page of issues.
+     *
+     * @param cursor The cursor after the previous page or null.
+     * @param since  If set, only issues which were updated at or after this time get requested.
+     * @return The connection of the page.
+     */
+    JsonNode requestIssuePage(String cursor, ZonedDateTime since) throws IOException, RequestFailedException {
+
+        Map<String, Object> variables = repositoryVariables();
+        variables.put("cursor", cursor);
+        variables.put("since", since == null ? null : since.toInstant().toString());
+
+        return restTool.requestGraphQL(ISSUES_QUERY, variables).path("repository").path("issues");
+    }
+
+    /**
+     * Requests one page of pull requests.
+     *
+     * @param cursor    The cursor after the previous page or null.
+     * @param ascending True for the least recently updated pull requests first.
+     * @return The connection of the page.
+     */
+    JsonNode requestPullRequestPage(String cursor, boolean ascending) throws IOException, RequestFailedException {
+
+        Map<String, Object> variables = repositoryVariables();
+        variables.put("cursor", cursor);
+        variables.put("direction", ascending ? "ASC" : "DESC");
+
+        return restTool.requestGraphQL(PULL_REQUESTS_QUERY, variables).path("repository").path("pullRequests");
+    }
+
+    private Map<String, Object> repositoryVariables() {
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("owner", xmlGitHubRepository.getUser());
+        variables.put("name", xmlGitHubRepository.getName());
+        return variables;
+    }
+
+    /**
+     * @param connection A connection of the GraphQL API.
+     * @return The cursor of the next page or null if this is the last page.
+     */
+    static String nextCursor(JsonNode connection) {
+
+        JsonNode pageInfo = connection.path("pageInfo");
+        return pageInfo.path("hasNextPage").asBoolean() ? text(pageInfo, "endCursor") : null;
+    }
+
+    /**
+     * Maps an issue or pull request node to the model of the REST API.
+     */
+    static GraphQLIssue toIssue(JsonNode node, boolean pullRequest) {
+
+        JSONIssue jsonIssue = new JSONIssue();
+        jsonIssue.setNumber(node.path("number").asInt());
+        jsonIssue.setTitle(text(node, "title"));
+
+        // The REST API returns no body instead of an empty one:
+        String body = text(node, "body");
+        jsonIssue.setBody(body == null || body.isEmpty() ? null : body);
+        jsonIssue.setBodyHtml(text(node, "bodyHTML"));
+
+        jsonIssue.setState(toState(text(node, "state")));
+        jsonIssue.setLocked(node.path("locked").asBoolean());
+        jsonIssue.setCreatedAt(text(node, "createdAt"));
+        jsonIssue.setUpdatedAt(text(node, "updatedAt"));
+        jsonIssue.setUser(toUser(node.get("author")));
+        jsonIssue.setComments(node.path("comments").path("totalCount").asInt());
+
+        List<JSONLabel> jsonLabels = new ArrayList<>();
+        for (JsonNode label : node.path("labels").path("nodes")) {
+            JSONLabel jsonLabel = new JSONLabel();
+            jsonLabel.setName(text(label, "name"));
+            jsonLabel.setDescription(text(label, "description"));
+            jsonLabels.add(jsonLabel);
+        }
+        jsonIssue.setLabels(jsonLabels);
+
+        List<JSONUser> jsonAssignees = new ArrayList<>();
+        for (JsonNode assignee : node.path("assignees").path("nodes")) {
+            jsonAssignees.add(toUser(assignee));
+        }
+        jsonIssue.setAssignees(jsonAssignees);
+
+        JsonNode milestone = node.get("milestone");
+        if (milestone != null && !milestone.isNull()) {
+            jsonIssue.setMilestone(toMilestone(milestone));
+        }
+
+        JSONIssue jsonPullRequest = null;
+        if (pullRequest) {
+            JSONPullRequest jsonPullRequestLink = new JSONPullRequest();
+            jsonPullRequestLink.setUrl(text(node, "url"));
+            jsonIssue.setPullRequest(jsonPullRequestLink);
+
+            jsonPullRequest = new JSONIssue();
+            jsonPullRequest.setNumber(jsonIssue.getNumber());
+            jsonPullRequest.setMergedAt(text(node, "mergedAt"));
+            jsonPullRequest.setMergeCommitSha(text(node.path("mergeCommit"), "oid"));
+        }
+
+        List<JSONComment> jsonComments = new ArrayList<>();
+        for (JsonNode comment : node.path("comments").path("nodes")) {
+            jsonComments.add(toComment(comment));
+        }
+
+        return new GraphQLIssue(jsonIssue, jsonPullRequest, jsonComments, text(node, "id"),
+            nextCursor(node.path("comments")));
+    }
+
+    private static JSONComment toComment(JsonNode node) {
+
+        JSONComment jsonComment = new JSONComment();
+        jsonComment.setId(node.path("databaseId").asLong());
+        jsonComment.setBody(text(node, "body"));
+        jsonComment.setBodyHtml(text(node, "bodyHTML"));
+        jsonComment.setUser(toUser(node.get("author")));
+        jsonComment.setCreatedAt(text(node, "createdAt"));
+        jsonComment.setUpdatedAt(text(node, "updatedAt"));
+        return jsonComment;
+    }
+
+    private static JSONMilestone toMilestone(JsonNode node) {
+
+        JSONMilestone jsonMilestone = new JSONMilestone();
+        jsonMilestone.setNumber(node.path("number").asInt());
+        jsonMilestone.setTitle(text(node, "title"));
+        jsonMilestone.setDescription(text(node, "description"));
+        jsonMilestone.setState(toState(text(node, "state")));
+        jsonMilestone.setCreatedAt(text(node, "createdAt"));
+        jsonMilestone.setUpdatedAt(text(node, "updatedAt"));
+        jsonMilestone.setDueOn(text(node, "dueOn"));
+        jsonMilestone.setCreator(toUser(node.get("creator")));
+        return jsonMilestone;
+    }
+
+    /**
+     * Deleted accounts are returned as null, the REST API calls them "ghost".
+     */
+    private static JSONUser toUser(JsonNode node) {
+
+        return new JSONUser(node == null || node.isNull() ? "ghost" : text(node, "login"));
+    }
+
+    /**
+     * The REST API knows "open" and "closed" only, a merged pull request is closed.
+     */
+    private static String toState(String state) {
+
+        if (state == null) {
+            return null;
+        }
+        return "MERGED".equals(state) ? "closed" : state.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static String text(JsonNode node, String field) {
+
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+}
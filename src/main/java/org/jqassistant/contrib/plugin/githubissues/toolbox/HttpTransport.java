@@ -0,0 +1,256 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.client.apache4.ApacheHttpClient4;
+import com.sun.jersey.client.apache4.ApacheHttpClient4Handler;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContexts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLSocket;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * The HTTP client which is shared by all {@link RestTool} instances of a scan.
+ * </p>
+ * Connections to the GitHub API are pooled and kept alive between requests, so a scan needs only a few TLS
+ * handshakes. All connections share one SSL context, which lets new connections resume earlier TLS sessions.
+ * <p>
+ * Responses are requested compressed, see {@link CompressionFilter}.
+ * <p>
+ * The pages of a paginated list are prefetched or, optionally, requested in parallel, see {@link PageIterator}.
+ * <p>
+ * The asynchronous requests of the {@link RestTool} run on virtual threads if the JVM has them. Otherwise they run on
+ * one thread per connection, as more threads would only wait for a connection.
+ * <p>
+ * The client doesn't carry any credentials, they are added to every request by the {@link RestTool} of the
+ * repository.
+ */
+public class HttpTransport implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpTransport.class);
+
+    /**
+     * How long a request waits for a connection of the pool. Connections are only leased while a response is read,
+     * so waiting longer means the pool is stuck.
+     */
+    private static final int CONNECTION_REQUEST_TIMEOUT_SECONDS = 300;
+
+    private final CloseableHttpClient httpClient;
+    private final Client client;
+    private final CompressionFilter compressionFilter = new CompressionFilter();
+
+    private final int pageFanOut;
+    private final ExecutorService pageExecutor;
+
+    private final int pagePrefetch;
+    private final ExecutorService prefetchExecutor;
+
+    private final ExecutorService requestExecutor;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong handshakes = new AtomicLong();
+
+    /**
+     * Creates a transport which requests the pages of a list one after another.
+     *
+     * @param maxConnections   The maximum number of open connections.
+     * @param keepAliveSeconds How long an idle connection is kept open, unless the server asks for less.
+     */
+    public HttpTransport(int maxConnections, int keepAliveSeconds) {
+
+        this(maxConnections, keepAliveSeconds, 1, 1);
+    }
+
+    /**
+     * @param maxConnections   The maximum number of open connections.
+     * @param keepAliveSeconds How long an idle connection is kept open, unless the server asks for less.
+     * @param pageFanOut       How many pages of all lists are requested at the same time. With 1 the pages of a
+     *                         list are requested one after another.
+     * @param pagePrefetch     How many pages of a list may be requested ahead of the page which is processed, if the
+     *                         pages are requested one after another. 0 disables the prefetch.
+     */
+    public HttpTransport(int maxConnections, int keepAliveSeconds, int pageFanOut, int pagePrefetch) {
+
+        this.pageFanOut = pageFanOut;
+        this.pagePrefetch = pagePrefetch;
+
+        AtomicInteger threads = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "githubissues-page-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        pageExecutor = pageFanOut > 1 ? Executors.newFixedThreadPool(pageFanOut, threadFactory) : null;
+
+        // Every prefetching list needs its own thread, which follows the "next" links:
+        prefetchExecutor = Executors.newCachedThreadPool(threadFactory);
+
+        ExecutorService virtualThreads = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        requestExecutor = virtualThreads != null ? virtualThreads : Executors.newFixedThreadPool(maxConnections,
+            runnable -> {
+                Thread thread = new Thread(runnable, "githubissues-request-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(SSLContexts.createSystemDefault()) {
+
+            @Override
+            protected void prepareSocket(SSLSocket socket) {
+                socket.addHandshakeCompletedListener(event -> handshakes.incrementAndGet());
+            }
+        };
+
+        Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", sslSocketFactory)
+            .build();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactories,
+            (route, config) -> {
+                connections.incrementAndGet();
+                return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+            });
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        long keepAliveMillis = TimeUnit.SECONDS.toMillis(keepAliveSeconds);
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long requested = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return requested > 0 ? Math.min(requested, keepAliveMillis) : keepAliveMillis;
+        };
+
+        httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setKeepAliveStrategy(keepAliveStrategy)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout((int) TimeUnit.SECONDS.toMillis(CONNECTION_REQUEST_TIMEOUT_SECONDS))
+                .build())
+            .evictIdleConnections(keepAliveSeconds, TimeUnit.SECONDS)
+            .addInterceptorFirst((HttpRequestInterceptor) (request, context) -> requests.incrementAndGet())
+            .disableCookieManagement()
+            // Decoding is done by the CompressionFilter, which counts the bytes before and after:
+            .disableContentCompression()
+            .build();
+
+        client = new ApacheHttpClient4(new ApacheHttpClient4Handler(httpClient, null, false));
+        client.addFilter(compressionFilter);
+    }
+
+    /**
+     * @return The Jersey client which sends its requests through the connection pool.
+     */
+    public Client getClient() {
+
+        return client;
+    }
+
+    long getRequestCount() {
+
+        return requests.get();
+    }
+
+    long getConnectionCount() {
+
+        return connections.get();
+    }
+
+    /**
+     * @return How many pages are requested at the same time.
+     */
+    int getPageFanOut() {
+
+        return pageFanOut;
+    }
+
+    /**
+     * @return The threads which request pages in parallel or null if pages are requested one after another.
+     */
+    ExecutorService getPageExecutor() {
+
+        return pageExecutor;
+    }
+
+    /**
+     * @return How many pages are prefetched.
+     */
+    int getPagePrefetch() {
+
+        return pagePrefetch;
+    }
+
+    /**
+     * @return The threads which prefetch pages.
+     */
+    ExecutorService getPrefetchExecutor() {
+
+        return prefetchExecutor;
+    }
+
+    /**
+     * @return The threads which send asynchronous requests.
+     */
+    ExecutorService getRequestExecutor() {
+
+        return requestExecutor;
+    }
+
+    CompressionFilter getCompressionFilter() {
+
+        return compressionFilter;
+    }
+
+    /**
+     * Logs how many requests were sent, how many connections they needed and the traffic of every endpoint.
+     */
+    public void logStatistics() {
+
+        long sent = requests.get();
+        long opened = connections.get();
+
+        LOGGER.info("HTTP transport: " + sent + " requests over " + opened + " connections (" +
+            Math.max(0, sent - opened) + " reused), " + handshakes.get() + " TLS handshakes.");
+
+        compressionFilter.logStatistics();
+    }
+
+    /**
+     * Closes all pooled connections.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (pageExecutor != null) {
+            pageExecutor.shutdownNow();
+        }
+        prefetchExecutor.shutdownNow();
+        requestExecutor.shutdownNow();
+
+        client.destroy();
+        httpClient.close();
+    }
+}
@@ -0,0 +1,232 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+
+import java.net.URI;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Finds references in markdown the way GitHub autolinks them, but without any request.
+ * </p>
+ * The following references get recognized:
+ * <ul>
+ * <li>Issues: "#123", "GH-123", "owner/repo#123" and URLs like "https://github.com/owner/repo/issues/123" or
+ * ".../pull/123",</li>
+ * <li>Commits: SHAs with 40 characters, "owner/repo@sha" and URLs like "https://github.com/owner/repo/commit/sha",</li>
+ * <li>Users: "@user".</li>
+ * </ul>
+ * Code blocks, code spans and HTML comments are ignored, like GitHub does.
+ * <p>
+ * Unlike GitHub, this can't check if a reference exists or expand an abbreviated SHA. GitHub links abbreviated SHAs
+ * with their full SHA, so they are skipped instead of creating commits the rendered markdown doesn't have. A URL
+ * keeps its SHA as it is written, like GitHub does.
+ */
+class LocalReferenceExtractor implements ReferenceExtractor {
+
+    private static final String LOGIN = "[A-Za-z0-9](?:-?[A-Za-z0-9]){0,38}";
+    private static final String REPO = "[A-Za-z0-9_.-]+";
+    private static final String SHA = "[0-9a-f]{7,40}";
+    private static final String FULL_SHA = "[0-9a-f]{40}";
+
+    private static final Pattern FENCE = Pattern.compile("^ {0,3}(`{3,}|~{3,})");
+    private static final Pattern LIST_ITEM = Pattern.compile("^\\s*(?:[-*+]|\\d+[.)])\\s");
+
+    private static final Pattern HTML_COMMENT = Pattern.compile("<!--.*?-->", Pattern.DOTALL);
+    private static final Pattern CODE_SPAN = Pattern.compile("(?<!`)(`+)(?!`)(.+?)(?<!`)\\1(?!`)", Pattern.DOTALL);
+
+    private static final Pattern MARKDOWN_LINK = Pattern.compile("\\[[^\\]\\n]*]\\(\\s*<?([^\\s)>]*)>?[^)]*\\)");
+    private static final Pattern URL = Pattern.compile("https?://[^\\s<>()\\[\\]\"']+");
+
+    private static final Pattern CROSS_REPOSITORY_COMMIT = Pattern.compile(
+        "(?<![\\w/.@-])(" + LOGIN + ")/(" + REPO + ")@(" + FULL_SHA + ")(?!\\w)");
+    private static final Pattern CROSS_REPOSITORY_ISSUE = Pattern.compile(
+        "(?<![\\w/.@-])(" + LOGIN + ")/(" + REPO + ")#(\\d+)(?!\\w)");
+    private static final Pattern ISSUE = Pattern.compile("(?<![\\w&/#@.-])(?:#|GH-)(\\d+)(?!\\w)");
+    private static final Pattern USER = Pattern.compile("(?<![\\w`@/.+-])@(" + LOGIN + ")(?![\\w/-])");
+    private static final Pattern COMMIT = Pattern.compile("(?<![\\w@/#.:-])(" + FULL_SHA + ")(?![\\w-])");
+
+    private final Pattern gitHubUrl;
+
+    /**
+     * @param apiUrl The URL of the GitHub API. URLs pointing at the web interface that belongs to it get recognized
+     *               besides "github.com", e.g. for GitHub Enterprise.
+     */
+    LocalReferenceExtractor(String apiUrl) {
+
+        Set<String> hosts = new LinkedHashSet<>();
+        hosts.add("github.com");
+
+        String apiHost = URI.create(apiUrl).getHost();
+        if (apiHost != null) {
+            hosts.add(apiHost.startsWith("api.") ? apiHost.substring("api.".length()) : apiHost);
+        }
+
+        StringBuilder hostAlternatives = new StringBuilder();
+        for (String host : hosts) {
+            hostAlternatives.append(hostAlternatives.length() == 0 ? "" : "|").append(Pattern.quote(host));
+        }
+
+        gitHubUrl = Pattern.compile("https?://(?:www\\.)?(?:" + hostAlternatives + ")(?::\\d+)?/(" + LOGIN + ")/(" +
+            REPO + ")/(?:(?:issues|pull)/(\\d+)|commit/(" + SHA + "))(?![0-9a-f])");
+    }
+
+    @Override
+    public MarkdownReferences extract(String markdown, XMLGitHubRepository xmlGitHubRepository, RestTool restTool) {
+
+        return extract(markdown, xmlGitHubRepository.getUser(), xmlGitHubRepository.getName());
+    }
+
+    /**
+     * @param markdown The markdown text.
+     * @param repoUser The owner of the repository the markdown belongs to.
+     * @param repoName The name of the repository the markdown belongs to.
+     * @return The references, grouped by their type.
+     */
+    MarkdownReferences extract(String markdown, String repoUser, String repoName) {
+
+        MarkdownReferences references = new MarkdownReferences();
+        if (markdown == null) {
+            return references;
+        }
+
+        // Every part which was handled gets blanked, so shorter patterns don't find anything in it again:
+        StringBuilder text = new StringBuilder(removeCodeBlocks(markdown));
+        blank(text, HTML_COMMENT);
+        blank(text, CODE_SPAN);
+
+        Matcher matcher = MARKDOWN_LINK.matcher(text);
+        while (matcher.find()) {
+            addUrl(references, matcher.group(1));
+            blank(text, matcher.start(), matcher.end());
+        }
+
+        matcher = URL.matcher(text);
+        while (matcher.find()) {
+            addUrl(references, matcher.group());
+            blank(text, matcher.start(), matcher.end());
+        }
+
+        matcher = CROSS_REPOSITORY_COMMIT.matcher(text);
+        while (matcher.find()) {
+            references.addCommit(matcher.group(1), matcher.group(2), matcher.group(3));
+            blank(text, matcher.start(), matcher.end());
+        }
+
+        matcher = CROSS_REPOSITORY_ISSUE.matcher(text);
+        while (matcher.find()) {
+            references.addIssue(matcher.group(1), matcher.group(2), Integer.parseInt(matcher.group(3)));
+            blank(text, matcher.start(), matcher.end());
+        }
+
+        matcher = ISSUE.matcher(text);
+        while (matcher.find()) {
+            references.addIssue(repoUser, repoName, Integer.parseInt(matcher.group(1)));
+        }
+
+        matcher = USER.matcher(text);
+        while (matcher.find()) {
+            references.addUser(matcher.group(1));
+        }
+
+        matcher = COMMIT.matcher(text);
+        while (matcher.find()) {
+            references.addCommit(repoUser, repoName, matcher.group(1));
+        }
+
+        return references;
+    }
+
+    private void addUrl(MarkdownReferences references, String url) {
+
+        Matcher matcher = gitHubUrl.matcher(url);
+        if (!matcher.lookingAt()) {
+            return;
+        }
+
+        if (matcher.group(3) != null) {
+            references.addIssue(matcher.group(1), matcher.group(2), Integer.parseInt(matcher.group(3)));
+        } else {
+            references.addCommit(matcher.group(1), matcher.group(2), matcher.group(4));
+        }
+    }
+
+    /**
+     * Removes fenced code blocks and indented code blocks. Indented lines which continue a list item are kept.
+     */
+    private static String removeCodeBlocks(String markdown) {
+
+        StringBuilder result = new StringBuilder(markdown.length());
+
+        String fence = null;
+        boolean blankBefore = true;
+        boolean indentedCode = false;
+        boolean inList = false;
+
+        for (String line : markdown.split("\r?\n", -1)) {
+
+            if (fence != null) {
+                if (line.trim().startsWith(fence) && line.trim().replace(fence.substring(0, 1), "").isEmpty()) {
+                    fence = null;
+                }
+                result.append('\n');
+                continue;
+            }
+
+            Matcher fenceMatcher = FENCE.matcher(line);
+            if (fenceMatcher.find()) {
+                fence = fenceMatcher.group(1);
+                result.append('\n');
+                continue;
+            }
+
+            if (line.trim().isEmpty()) {
+                blankBefore = true;
+                result.append('\n');
+                continue;
+            }
+
+            boolean indented = line.startsWith("    ") || line.startsWith("\t");
+            if (indented && (indentedCode || blankBefore && !inList)) {
+                indentedCode = true;
+                result.append('\n');
+                continue;
+            }
+
+            indentedCode = false;
+            if (LIST_ITEM.matcher(line).find()) {
+                inList = true;
+            } else if (!indented && blankBefore) {
+                inList = false;
+            }
+            blankBefore = false;
+
+            result.append(line).append('\n');
+        }
+
+        return result.toString();
+    }
+
+    private static void blank(StringBuilder text, Pattern pattern) {
+
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            blank(text, matcher.start(), matcher.end());
+        }
+    }
+
+    /**
+     * Replaces a part of the text with spaces. Line breaks are kept, so line based constructs stay intact.
+     */
+    private static void blank(StringBuilder text, int start, int end) {
+
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) != '\n') {
+                text.setCharAt(i, ' ');
+            }
+        }
+    }
+}
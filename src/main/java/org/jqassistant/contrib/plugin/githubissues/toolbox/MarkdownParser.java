@@ -2,14 +2,12 @@ package org.jqassistant.contrib.plugin.githubissues.toolbox;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.sun.jersey.api.client.UniformInterfaceException;
-import lombok.AllArgsConstructor;
 import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
 import org.jqassistant.contrib.plugin.githubissues.json.JSONUser;
+import org.jqassistant.contrib.plugin.githubissues.model.GitHubIssue;
 import org.jqassistant.contrib.plugin.githubissues.model.GitHubMarkdownPointer;
 import org.jqassistant.contrib.plugin.githubissues.toolbox.cache.CacheEndpoint;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.cache.MarkdownReferenceCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,87 +19,107 @@ import java.util.List;
  * The {@link MarkdownParser} is an additional feature which resolves references in the text body of issues and
  * comments.
  * <p>
- * For more information have a look at the documentation of
- * {@link #getReferencesInMarkdown(String, GitHubMarkdownPointer, XMLGitHubRepository, RestTool)}.
+ * This happens in two steps: {@link #extractReferences(String, XMLGitHubRepository, RestTool)} finds the references
+ * in a text and only talks to the GitHub API, so it may be called by any thread.
+ * {@link #resolveReferences(MarkdownReferences, GitHubMarkdownPointer, XMLGitHubRepository, RestTool)} links them
+ * to descriptors and must be called by the thread which writes to the store.
+ * <p>
+ * Finding the references is done by a {@link ReferenceExtractor} which gets selected per repository, see
+ * {@link XMLGitHubRepository.Markdown}. The references of every text are kept in a {@link MarkdownReferenceCache},
+ * so identical texts are parsed only once. Texts which can't contain any reference are skipped right away, see
+ * {@link ReferencePreFilter}.
  */
-@AllArgsConstructor
 public class MarkdownParser {
 
-    private static final String[] REPLACES = {"https://github.com/", "commit/", "issues/"};
-
     private static final Logger LOGGER = LoggerFactory.getLogger(MarkdownParser.class);
 
     private CacheEndpoint cacheEndpoint;
 
+    private MarkdownReferenceCache referenceCache;
+
+    private ReferenceExtractor renderedReferenceExtractor;
+    private ReferenceExtractor localReferenceExtractor;
+
+    /**
+     * @param cacheEndpoint  The cache endpoint which resolves references to descriptors.
+     * @param referenceCache The cache for the references found in markdown texts.
+     * @param apiUrl         The URL of the GitHub API.
+     */
+    public MarkdownParser(CacheEndpoint cacheEndpoint, MarkdownReferenceCache referenceCache, String apiUrl) {
+
+        this.cacheEndpoint = cacheEndpoint;
+        this.referenceCache = referenceCache;
+        this.renderedReferenceExtractor = new RenderedReferenceExtractor();
+        this.localReferenceExtractor = new LocalReferenceExtractor(apiUrl);
+    }
+
     /**
      * <p>
-     * This function parses bodies of descriptors that contain markdown information, e.g. issues
+     * This function finds the references in bodies of descriptors that contain markdown information, e.g. issues
      * or comments.
      * </p>
-     * The following references get resolved:
+     * The following references get found:
      * <ul>
      * <li>Commits,</li>
      * <li>Issues</li>
      * <li>and Users.</li>
      * </ul>
-     * IMPORTANT: The depth for resolving references is 1!
+     * If the markdown can't be rendered, no references are returned.
      *
-     * @param markdown              The markdown that shall be parsed.
-     * @param gitHubMarkdownPointer The descriptor containing this markdown.
-     * @param xmlGitHubRepository   The repository context from the plugin configuration.
-     * @param restTool              The tool to retrieve data from the GitHub API.
-     * @throws IOException If the parsing of an issue request fails.
+     * @param markdown            The markdown that shall be parsed.
+     * @param xmlGitHubRepository The repository context from the plugin configuration.
+     * @param restTool            The tool to retrieve data from the GitHub API.
+     * @return The references in the markdown.
+     * @throws IOException If the parsing of a response fails.
      */
-    public void getReferencesInMarkdown(
-        String markdown,
-        GitHubMarkdownPointer gitHubMarkdownPointer,
-        XMLGitHubRepository xmlGitHubRepository,
-        RestTool restTool) throws IOException {
-
-        try {
-            // https://developer.github.com/v3/guides/best-practices-for-integrators/#dealing-with-abuse-rate-limits
-            Thread.sleep(1000);
-
-            LOGGER.debug("MARKDOWN:\n" + markdown + "\n");
+    public MarkdownReferences extractReferences(String markdown,
+                                                XMLGitHubRepository xmlGitHubRepository,
+                                                RestTool restTool) throws IOException {
 
-            String html = restTool.requestMarkdownToHtml(markdown);
-
-            LOGGER.debug("HTML:\n" + html + "\n");
-
-            Document htmlDocument = Jsoup.parse(html);
-
-            for (Element issueElement : htmlDocument.select("a.issue-link")) {
-
-                List<String> hrefCut = removeDispensableHrefPartsAndCutIt(issueElement.attr("data-url"));
-
-                gitHubMarkdownPointer.getGitHubIssues().add(
-                    cacheEndpoint.findOrCreateGitHubIssue(
-                        hrefCut.get(0),
-                        hrefCut.get(1),
-                        Integer.parseInt(hrefCut.get(2)),
-                        xmlGitHubRepository,
-                        restTool));
-            }
-
-            for (Element commitElement : htmlDocument.select("a.commit-link")) {
+        return extractReferences(markdown, null, xmlGitHubRepository, restTool);
+    }
 
-                List<String> hrefCut = removeDispensableHrefPartsAndCutIt(commitElement.attr("href"));
+    /**
+     * Like {@link #extractReferences(String, XMLGitHubRepository, RestTool)}, but if the text was already rendered by
+     * GitHub, the references are taken from the HTML instead of rendering the markdown again.
+     *
+     * @param markdown            The markdown that shall be parsed.
+     * @param html                The markdown rendered by GitHub or null.
+     * @param xmlGitHubRepository The repository context from the plugin configuration.
+     * @param restTool            The tool to retrieve data from the GitHub API.
+     * @return The references in the markdown.
+     * @throws IOException If the parsing of a response fails.
+     */
+    public MarkdownReferences extractReferences(String markdown,
+                                                String html,
+                                                XMLGitHubRepository xmlGitHubRepository,
+                                                RestTool restTool) throws IOException {
+
+        // Many texts like "+1" or "Thanks!" can't contain a reference:
+        if (!ReferencePreFilter.mayContainReferences(markdown)) {
+            return new MarkdownReferences();
+        }
 
-                gitHubMarkdownPointer.getGitHubCommits().add(
-                    cacheEndpoint.findOrCreateGitHubCommit(
-                        hrefCut.get(0),
-                        hrefCut.get(1),
-                        hrefCut.get(2)));
-            }
+        if (html != null && xmlGitHubRepository.getMarkdown() == XMLGitHubRepository.Markdown.API) {
+            return RenderedReferenceExtractor.parseHtml(html);
+        }
 
-            for (Element userElement : htmlDocument.select("a.user-mention")) {
+        ReferenceExtractor referenceExtractor = xmlGitHubRepository.getMarkdown() == XMLGitHubRepository.Markdown.LOCAL ?
+            localReferenceExtractor : renderedReferenceExtractor;
 
-                List<String> hrefCut = removeDispensableHrefPartsAndCutIt(userElement.attr("href"));
+        // References without a repository point into the current one, so it's part of the key:
+        String context = xmlGitHubRepository.getMarkdown() + "\n" +
+            xmlGitHubRepository.getUser() + "/" + xmlGitHubRepository.getName();
 
-                gitHubMarkdownPointer.getGitHubUsers().add(
-                    cacheEndpoint.findOrCreateGitHubUser(new JSONUser(hrefCut.get(0))));
-            }
+        MarkdownReferences references = referenceCache.get(markdown, context);
+        if (references != null) {
+            return references;
+        }
 
+        try {
+            references = referenceExtractor.extract(markdown, xmlGitHubRepository, restTool);
+            referenceCache.put(markdown, context, references);
+            return references;
 
         } catch (JsonProcessingException e) {
             LOGGER.error("Converting markdown to html threw an error:", e);
@@ -110,47 +128,125 @@ public class MarkdownParser {
             LOGGER.error("Converting markdown to html threw an UniformInterfaceException: \"" + e.getMessage() + "\"");
             LOGGER.error("Entity:\n\n" + e.getResponse().getEntity(String.class));
             LOGGER.error("Header Retry-After: " + e.getResponse().getHeaders().get("Retry-After") + " s");
-        } catch (InterruptedException e) {
-            LOGGER.error("InterruptedException: ", e);
         } catch (RequestFailedException e) {
             LOGGER.warn("Markdown request failed:", e);
         }
+
+        return new MarkdownReferences();
+    }
+
+    /**
+     * Requests the issues of other repositories which are referenced by the markdown, so they are known when the
+     * references get resolved. This may be called by any thread.
+     *
+     * @param references          The references found by
+     *                            {@link #extractReferences(String, XMLGitHubRepository, RestTool)}.
+     * @param xmlGitHubRepository The repository context from the plugin configuration.
+     * @param restTool            The tool to retrieve data from the GitHub API.
+     */
+    public void prefetchReferencedIssues(MarkdownReferences references,
+                                         XMLGitHubRepository xmlGitHubRepository,
+                                         RestTool restTool) {
+
+        for (MarkdownReferences.IssueReference issue : references.getIssues()) {
+
+            // The issues of the current repository get listed anyway:
+            if (!isOwnIssue(issue, xmlGitHubRepository)) {
+                cacheEndpoint.prefetchGitHubIssue(
+                    issue.getRepoUser(), issue.getRepoName(), issue.getIssueNumber(), restTool);
+            }
+        }
+    }
+
+    /**
+     * Links the descriptor containing the markdown to the referenced descriptors.
+     * <p>
+     * IMPORTANT: The depth for resolving references is 1!
+     *
+     * @param references            The references found by
+     *                              {@link #extractReferences(String, XMLGitHubRepository, RestTool)}.
+     * @param gitHubMarkdownPointer The descriptor containing this markdown.
+     * @param xmlGitHubRepository   The repository context from the plugin configuration.
+     * @param restTool              The tool to retrieve data from the GitHub API.
+     * @throws IOException If the parsing of an issue request fails.
+     */
+    public void resolveReferences(MarkdownReferences references,
+                                  GitHubMarkdownPointer gitHubMarkdownPointer,
+                                  XMLGitHubRepository xmlGitHubRepository,
+                                  RestTool restTool) throws IOException {
+
+        resolveReferences(references, gitHubMarkdownPointer, xmlGitHubRepository, restTool, false);
     }
 
     /**
-     * The HTML-anchors returned by the GitHub API contain URLs which can be used to extract IDs.
-     * To make the extraction more clear dispensable parts will be removed and the URL will be cut
-     * in sub parts.
+     * Like {@link #resolveReferences(MarkdownReferences, GitHubMarkdownPointer, XMLGitHubRepository, RestTool)}, but
+     * references to issues of the current repository which weren't imported yet can be left out. They are likely
+     * imported later by the same scan, so requesting them now would be wasted.
      *
-     * @param href The URL which shall be cleaned and cut.
-     * @return A list of importing sub parts.
+     * @param references            The references found by
+     *                              {@link #extractReferences(String, XMLGitHubRepository, RestTool)}.
+     * @param gitHubMarkdownPointer The descriptor containing this markdown.
+     * @param xmlGitHubRepository   The repository context from the plugin configuration.
+     * @param restTool              The tool to retrieve data from the GitHub API.
+     * @param deferOwnIssues        True, if unknown issues of the current repository shall be left out.
+     * @return The numbers of the issues which were left out.
+     * @throws IOException If the parsing of an issue request fails.
      */
-    private static List<String> removeDispensableHrefPartsAndCutIt(String href) {
+    public List<Integer> resolveReferences(MarkdownReferences references,
+                                           GitHubMarkdownPointer gitHubMarkdownPointer,
+                                           XMLGitHubRepository xmlGitHubRepository,
+                                           RestTool restTool,
+                                           boolean deferOwnIssues) throws IOException {
 
-        List<String> result = new ArrayList<>();
+        List<Integer> deferredIssues = new ArrayList<>();
 
-        for (String replace : REPLACES) {
-            href = href.replaceAll(replace, "");
+        for (MarkdownReferences.IssueReference issue : references.getIssues()) {
+
+            if (deferOwnIssues && isOwnIssue(issue, xmlGitHubRepository) &&
+                cacheEndpoint.findGitHubIssue(issue.getIssueNumber(), xmlGitHubRepository) == null) {
+                deferredIssues.add(issue.getIssueNumber());
+                continue;
+            }
+
+            // A reference which can't be resolved is left out, the others are linked anyway:
+            try {
+                GitHubIssue gitHubIssue = cacheEndpoint.findOrCreateGitHubIssue(
+                    issue.getRepoUser(),
+                    issue.getRepoName(),
+                    issue.getIssueNumber(),
+                    xmlGitHubRepository,
+                    restTool);
+
+                if (gitHubIssue != null) {
+                    gitHubMarkdownPointer.getGitHubIssues().add(gitHubIssue);
+                }
+            } catch (RequestFailedException e) {
+                LOGGER.warn("Issue request failed:", e);
+            }
         }
 
-        // A user annotation consists of only one element: The user name.
-        if (!href.contains("/")) {
-            result.add(href);
-        } else {
-            // Issue and commit references are tuple (repoUser, repoName, commitSha | issueNumber).
+        for (MarkdownReferences.CommitReference commit : references.getCommits()) {
 
-            // Get repository user:
-            result.add(href.substring(0, href.indexOf("/")));
-            href = href.substring(href.indexOf("/") + 1);
+            gitHubMarkdownPointer.getGitHubCommits().add(
+                cacheEndpoint.findOrCreateGitHubCommit(
+                    commit.getRepoUser(),
+                    commit.getRepoName(),
+                    commit.getCommitSha()));
+        }
 
-            // Get repository name:
-            result.add(href.substring(0, href.indexOf("/")));
-            href = href.substring(href.indexOf("/") + 1);
+        for (String user : references.getUsers()) {
 
-            // Get commit sha or issue number:
-            result.add(href);
+            gitHubMarkdownPointer.getGitHubUsers().add(
+                cacheEndpoint.findOrCreateGitHubUser(new JSONUser(user)));
         }
 
-        return result;
+        return deferredIssues;
+    }
+
+    private static boolean isOwnIssue(MarkdownReferences.IssueReference issue,
+                                      XMLGitHubRepository xmlGitHubRepository) {
+
+        return issue.getRepoUser().equals(xmlGitHubRepository.getUser()) &&
+            issue.getRepoName().equals(xmlGitHubRepository.getName());
     }
 }
@@ -0,0 +1,64 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The references found in one markdown text, before they get resolved to descriptors.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class MarkdownReferences {
+
+    private final Set<IssueReference> issues = new LinkedHashSet<>();
+    private final Set<CommitReference> commits = new LinkedHashSet<>();
+    private final Set<String> users = new LinkedHashSet<>();
+
+    public void addIssue(String repoUser, String repoName, int issueNumber) {
+
+        issues.add(new IssueReference(repoUser, repoName, issueNumber));
+    }
+
+    public void addCommit(String repoUser, String repoName, String commitSha) {
+
+        commits.add(new CommitReference(repoUser, repoName, commitSha));
+    }
+
+    public void addUser(String login) {
+
+        users.add(login);
+    }
+
+    boolean isEmpty() {
+
+        return issues.isEmpty() && commits.isEmpty() && users.isEmpty();
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static class IssueReference {
+
+        private String repoUser;
+        private String repoName;
+        private int issueNumber;
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static class CommitReference {
+
+        private String repoUser;
+        private String repoName;
+        private String commitSha;
+    }
+}
@@ -0,0 +1,344 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import org.jqassistant.contrib.plugin.githubissues.json.JSONParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Iterates over the elements of a paginated list of the GitHub API.
+ * </p>
+ * Pages are requested when the elements of the previous page were read. Each page is read and parsed completely
+ * before its elements are handed out, so only one page is held in memory at a time and its connection goes back to
+ * the pool right away. A connection must not wait for the caller, who may need another connection to process the
+ * elements, e.g. for the comments of an issue.
+ * <p>
+ * If the {@link HttpTransport} requests pages in parallel and the first page tells the number of pages by a "last"
+ * link, the remaining pages are requested at once instead of following the "next" links. At most as many pages as
+ * the fan-out of the transport are requested ahead. The elements are still returned in the order of the pages.
+ * If the number of pages is known before the first request, all pages are requested in parallel right away.
+ * <p>
+ * Otherwise, the following pages are prefetched: as soon as the "next" link of a page is known, the next page gets
+ * requested while the current page is processed. The prefetched pages wait in a queue whose capacity is the prefetch
+ * depth of the transport.
+ * <p>
+ * If a page can't be requested, the iteration ends after the elements of the previous pages, like the list had no
+ * more pages.
+ *
+ * @param <T> The type of the elements.
+ */
+public class PageIterator<T> implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageIterator.class);
+
+    private static final Pattern PAGE_PARAMETER = Pattern.compile("([?&]page=)(\\d+)");
+
+    private final RestTool restTool;
+    private final HttpTransport httpTransport;
+    private final Class<T> type;
+
+    private String nextUrl;
+    private boolean firstPage = true;
+    private int expectedPages;
+
+    // Only used while pages are requested in parallel:
+    private String lastUrl;
+    private int nextPageNumber;
+    private int lastPageNumber;
+    private final Deque<Future<RestResponse>> pendingPages = new ArrayDeque<>();
+
+    // Only used while pages are prefetched:
+    private BlockingQueue<PrefetchedPage> prefetchedPages;
+    private Future<?> prefetcher;
+
+    private Iterator<T> elements;
+
+    /**
+     * @param restTool      The tool which requests the pages.
+     * @param httpTransport The transport which decides if pages are requested in parallel.
+     * @param url           The URL of the first page.
+     * @param type          The type of the elements.
+     */
+    PageIterator(RestTool restTool, HttpTransport httpTransport, String url, Class<T> type) {
+
+        this(restTool, httpTransport, url, type, 0);
+    }
+
+    /**
+     * @param restTool      The tool which requests the pages.
+     * @param httpTransport The transport which decides if pages are requested in parallel.
+     * @param url           The URL of the first page, without a "page" parameter.
+     * @param type          The type of the elements.
+     * @param expectedPages The number of pages if it is known in advance, e.g. from a count, otherwise 0. If the
+     *                      list grew in the meantime, the "next" link of the last expected page is followed.
+     */
+    PageIterator(RestTool restTool, HttpTransport httpTransport, String url, Class<T> type, int expectedPages) {
+
+        this.restTool = restTool;
+        this.httpTransport = httpTransport;
+        this.nextUrl = url;
+        this.type = type;
+        this.expectedPages = expectedPages;
+    }
+
+    /**
+     * @return True if there is another element, the next page gets requested if needed.
+     * @throws IOException If parsing the response fails.
+     */
+    public boolean hasNext() throws IOException {
+
+        while (elements == null || !elements.hasNext()) {
+
+            elements = null;
+
+            if (nextUrl == null && pendingPages.isEmpty() && prefetchedPages == null) {
+                return false;
+            }
+
+            openPage();
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The next element.
+     * @throws IOException If parsing the response fails.
+     */
+    public T next() throws IOException {
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return elements.next();
+    }
+
+    private void openPage() throws IOException {
+
+        RestResponse page;
+        if (firstPage && expectedPages > 1 && httpTransport.getPageExecutor() != null) {
+            startKnownFanOut();
+        }
+
+        try {
+            if (!pendingPages.isEmpty()) {
+                page = Futures.await(pendingPages.poll());
+                requestPagesInParallel();
+
+                // Follow the list if it got longer than expected:
+                if (pendingPages.isEmpty() && expectedPages > 1) {
+                    nextUrl = RestTool.getNextPaginationUrl(page.getLink());
+                }
+            } else if (prefetchedPages != null) {
+                page = takePrefetchedPage();
+            } else {
+                if (!firstPage) {
+                    LOGGER.info("Requesting next page: \"" + nextUrl + "\"");
+                }
+                page = restTool.requestPage(nextUrl);
+                nextUrl = RestTool.getNextPaginationUrl(page.getLink());
+            }
+        } catch (RequestFailedException e) {
+
+            // If an error occurs:
+            LOGGER.warn("Pagination REST failure:", e);
+            cancelPendingPages();
+            stopPrefetch();
+            nextUrl = null;
+            return;
+        }
+
+        if (firstPage) {
+            firstPage = false;
+            startFanOut(page);
+            startPrefetch();
+        }
+
+        elements = JSONParser.getInstance().parseArray(page.getEntity(), type).iterator();
+    }
+
+    /**
+     * Reads the number of pages from the "last" link of the first page.
+     */
+    private void startFanOut(RestResponse page) {
+
+        if (httpTransport.getPageExecutor() == null) {
+            return;
+        }
+
+        String url = RestTool.getPaginationUrl(page.getLink(), "last");
+        Matcher matcher = url == null ? null : PAGE_PARAMETER.matcher(url);
+        if (matcher == null || !matcher.find()) {
+            return;
+        }
+
+        lastUrl = url;
+        lastPageNumber = Integer.parseInt(matcher.group(2));
+        nextPageNumber = 2;
+
+        // The "next" links are not needed anymore:
+        nextUrl = null;
+
+        LOGGER.info("Requesting " + (lastPageNumber - 1) + " more pages in parallel: \"" + lastUrl + "\"");
+
+        requestPagesInParallel();
+    }
+
+    /**
+     * Requests all expected pages in parallel, starting with the first one.
+     */
+    private void startKnownFanOut() {
+
+        firstPage = false;
+
+        lastUrl = nextUrl + "&page=" + expectedPages;
+        lastPageNumber = expectedPages;
+        nextPageNumber = 1;
+        nextUrl = null;
+
+        LOGGER.info("Requesting " + expectedPages + " pages in parallel: \"" + lastUrl + "\"");
+
+        requestPagesInParallel();
+    }
+
+    private void requestPagesInParallel() {
+
+        while (pendingPages.size() < httpTransport.getPageFanOut() && nextPageNumber <= lastPageNumber) {
+
+            String url = PAGE_PARAMETER.matcher(lastUrl).replaceFirst("$1" + nextPageNumber++);
+            pendingPages.add(httpTransport.getPageExecutor().submit(() -> restTool.requestPage(url)));
+        }
+    }
+
+    /**
+     * Starts a background task which follows the "next" links and queues the pages.
+     */
+    private void startPrefetch() {
+
+        if (nextUrl == null || httpTransport.getPagePrefetch() == 0) {
+            return;
+        }
+
+        String url = nextUrl;
+        nextUrl = null;
+
+        prefetchedPages = new ArrayBlockingQueue<>(httpTransport.getPagePrefetch());
+        prefetcher = httpTransport.getPrefetchExecutor().submit(() -> prefetch(url, prefetchedPages));
+    }
+
+    private void prefetch(String url, BlockingQueue<PrefetchedPage> queue) {
+
+        try {
+            while (url != null) {
+
+                LOGGER.info("Requesting next page: \"" + url + "\"");
+
+                PrefetchedPage prefetchedPage;
+                try {
+                    RestResponse response = restTool.requestPage(url);
+                    url = RestTool.getNextPaginationUrl(response.getLink());
+                    prefetchedPage = new PrefetchedPage(response, null, url == null);
+                } catch (Exception | Error e) {
+                    // Every failure is handed on, the iterator would wait for the next page forever otherwise:
+                    url = null;
+                    prefetchedPage = new PrefetchedPage(null, e, true);
+                }
+
+                // Blocks while the queue is full:
+                queue.put(prefetchedPage);
+            }
+        } catch (InterruptedException e) {
+            // The iterator got closed.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private RestResponse takePrefetchedPage() throws IOException, RequestFailedException {
+
+        PrefetchedPage prefetchedPage;
+        try {
+            prefetchedPage = prefetchedPages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a page.");
+        }
+
+        if (prefetchedPage.last) {
+            prefetchedPages = null;
+            prefetcher = null;
+        }
+
+        if (prefetchedPage.failure instanceof RequestFailedException) {
+            throw (RequestFailedException) prefetchedPage.failure;
+        }
+        if (prefetchedPage.failure instanceof IOException) {
+            throw (IOException) prefetchedPage.failure;
+        }
+        if (prefetchedPage.failure instanceof Error) {
+            throw (Error) prefetchedPage.failure;
+        }
+        if (prefetchedPage.failure != null) {
+            throw (RuntimeException) prefetchedPage.failure;
+        }
+
+        return prefetchedPage.page;
+    }
+
+    private void cancelPendingPages() {
+
+        for (Future<RestResponse> pendingPage : pendingPages) {
+            pendingPage.cancel(true);
+        }
+        pendingPages.clear();
+        nextPageNumber = lastPageNumber + 1;
+    }
+
+    private void stopPrefetch() {
+
+        if (prefetcher != null) {
+            prefetcher.cancel(true);
+            prefetcher = null;
+        }
+        prefetchedPages = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        nextUrl = null;
+        cancelPendingPages();
+        stopPrefetch();
+        elements = null;
+    }
+
+    /**
+     * A page which was requested by the prefetch task, or the reason why it couldn't be requested.
+     */
+    private static class PrefetchedPage {
+
+        private final RestResponse page;
+        private final Throwable failure;
+        private final boolean last;
+
+        PrefetchedPage(RestResponse page, Throwable failure, boolean last) {
+
+            this.page = page;
+            this.failure = failure;
+            this.last = last;
+        }
+    }
+}
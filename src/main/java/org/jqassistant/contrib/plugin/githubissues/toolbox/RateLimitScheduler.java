@@ -0,0 +1,220 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import com.sun.jersey.api.client.ClientResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The {@link RateLimitScheduler} decides when the next request to the GitHub API may be sent.
+ * </p>
+ * It replaces fixed pauses between requests by reading the rate limit headers of every response:
+ * <ul>
+ * <li>As long as plenty of the budget is left, requests are sent at full speed.</li>
+ * <li>If the budget runs low, the remaining requests are spread evenly until the limit gets reset.</li>
+ * <li>If the budget is exhausted or the server sent a "Retry-After" header, requests are blocked until then.</li>
+ * </ul>
+ * GitHub counts the rate limit per account, therefore all {@link RestTool}s with the same API URL and credentials
+ * share one scheduler.
+ *
+ * @see <a href="https://developer.github.com/v3/#rate-limiting">Rate limiting</a>
+ */
+public class RateLimitScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitScheduler.class);
+
+    private static final Map<String, RateLimitScheduler> SCHEDULERS = new ConcurrentHashMap<>();
+
+    /**
+     * Requests get paced as soon as less than this fraction of the limit is left.
+     */
+    private static final double LOW_BUDGET_FRACTION = 0.2;
+
+    /**
+     * Waits longer than this get logged as the scan seems to hang otherwise.
+     */
+    private static final long LOG_WAIT_MILLIS = 5000;
+
+    private long limit = -1;
+    private long remaining = -1;
+    private long resetAtMillis;
+    private long blockedUntilMillis;
+    private long nextSlotMillis;
+
+    RateLimitScheduler() {
+    }
+
+    /**
+     * Returns the scheduler for an account.
+     *
+     * @param apiUrl The URL of the GitHub API.
+     * @param user   The user whose credentials are used for the requests.
+     * @return The shared scheduler.
+     */
+    static RateLimitScheduler forAccount(String apiUrl, String user) {
+
+        return SCHEDULERS.computeIfAbsent(apiUrl + "|" + user, key -> new RateLimitScheduler());
+    }
+
+    /**
+     * Blocks until the next request may be sent.
+     *
+     * @throws InterruptedException If the thread gets interrupted while waiting.
+     */
+    void acquire() throws InterruptedException {
+
+        long waitMillis = reserve(System.currentTimeMillis());
+
+        if (waitMillis > LOG_WAIT_MILLIS) {
+            LOGGER.info("GitHub rate limit is low, waiting " + TimeUnit.MILLISECONDS.toSeconds(waitMillis) + " s.");
+        }
+        if (waitMillis > 0) {
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    /**
+     * Reserves the budget for one request.
+     *
+     * @param now The current time in milliseconds.
+     * @return How long the caller has to wait before sending the request in milliseconds.
+     */
+    synchronized long reserve(long now) {
+
+        if (blockedUntilMillis > now) {
+            return blockedUntilMillis - now;
+        }
+
+        // Nothing is known before the first response arrived or after the limit got reset:
+        if (remaining < 0 || resetAtMillis <= now) {
+            return 0;
+        }
+
+        if (remaining == 0) {
+            return resetAtMillis - now;
+        }
+
+        long wait = 0;
+        if (remaining < limit * LOW_BUDGET_FRACTION) {
+            long interval = (resetAtMillis - now) / remaining;
+            long slot = Math.max(now, nextSlotMillis);
+            nextSlotMillis = slot + interval;
+            wait = slot - now;
+        }
+
+        remaining--;
+        return wait;
+    }
+
+    /**
+     * Tells how many requests may be in flight at the same time. Without a limit on the number of threads, e.g.
+     * with virtual threads, this keeps the crawl from sending requests which would only wait for the scheduler.
+     *
+     * @param max The limit which is returned as long as plenty of the budget is left.
+     * @return The number of requests which can be sent at full speed, at least 1 and at most max.
+     */
+    int concurrencyLimit(int max) {
+
+        return concurrencyLimit(System.currentTimeMillis(), max);
+    }
+
+    /**
+     * @param now The current time in milliseconds.
+     * @param max The limit which is returned as long as plenty of the budget is left.
+     * @return The number of requests which can be sent at full speed, at least 1 and at most max.
+     */
+    synchronized int concurrencyLimit(long now, int max) {
+
+        if (blockedUntilMillis > now) {
+            return 1;
+        }
+
+        if (remaining < 0 || resetAtMillis <= now) {
+            return max;
+        }
+
+        // Only the budget above the point where the requests get paced is available at full speed:
+        long unpaced = remaining - (long) (limit * LOW_BUDGET_FRACTION);
+        return (int) Math.max(1, Math.min(max, unpaced));
+    }
+
+    /**
+     * Reads the rate limit headers of a response.
+     *
+     * @param response The response from the GitHub API.
+     */
+    void update(ClientResponse response) {
+
+        update(System.currentTimeMillis(),
+            parseLong(response.getHeaders().getFirst("X-RateLimit-Limit")),
+            parseLong(response.getHeaders().getFirst("X-RateLimit-Remaining")),
+            parseLong(response.getHeaders().getFirst("X-RateLimit-Reset")),
+            parseLong(response.getHeaders().getFirst("Retry-After")));
+    }
+
+    /**
+     * Updates the budget. Responses of parallel requests may arrive out of order, so a response only lowers the
+     * remaining budget unless it belongs to a newer rate limit window.
+     *
+     * @param now               The current time in milliseconds.
+     * @param limit             The value of "X-RateLimit-Limit" or -1.
+     * @param remaining         The value of "X-RateLimit-Remaining" or -1.
+     * @param resetAtSeconds    The value of "X-RateLimit-Reset" (UTC epoch seconds) or -1.
+     * @param retryAfterSeconds The value of "Retry-After" or -1.
+     */
+    synchronized void update(long now, long limit, long remaining, long resetAtSeconds, long retryAfterSeconds) {
+
+        if (retryAfterSeconds >= 0) {
+            blockedUntilMillis = Math.max(blockedUntilMillis, now + TimeUnit.SECONDS.toMillis(retryAfterSeconds));
+        }
+
+        if (remaining < 0 || resetAtSeconds < 0) {
+            return;
+        }
+
+        long resetAtMillis = TimeUnit.SECONDS.toMillis(resetAtSeconds);
+
+        if (resetAtMillis > this.resetAtMillis) {
+            this.resetAtMillis = resetAtMillis;
+            this.remaining = remaining;
+            this.nextSlotMillis = now;
+        } else if (resetAtMillis == this.resetAtMillis) {
+            this.remaining = Math.min(this.remaining, remaining);
+        }
+
+        if (limit > 0) {
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * Checks whether a request got rejected because of the rate limit and may be retried.
+     *
+     * @param response The response from the GitHub API.
+     * @return True if the request was rejected because of the rate limit.
+     */
+    static boolean isRateLimited(ClientResponse response) {
+
+        int status = response.getStatus();
+
+        return status == 429
+            || (status == 403 && (response.getHeaders().getFirst("Retry-After") != null
+            || "0".equals(response.getHeaders().getFirst("X-RateLimit-Remaining"))));
+    }
+
+    private static long parseLong(String value) {
+
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
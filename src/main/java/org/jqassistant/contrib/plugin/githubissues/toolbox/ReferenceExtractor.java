@@ -0,0 +1,24 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+
+import java.io.IOException;
+
+/**
+ * Finds the references to issues, commits and users in a markdown text.
+ */
+interface ReferenceExtractor {
+
+    /**
+     * @param markdown            The markdown text.
+     * @param xmlGitHubRepository The repository the markdown belongs to. References without a repository point into
+     *                            this one.
+     * @param restTool            The tool to retrieve data from the GitHub API.
+     * @return The references in the order they appear.
+     * @throws IOException            If the parsing of a response fails.
+     * @throws RequestFailedException If a request fails.
+     */
+    MarkdownReferences extract(String markdown,
+                               XMLGitHubRepository xmlGitHubRepository,
+                               RestTool restTool) throws IOException, RequestFailedException;
+}
@@ -0,0 +1,81 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+/**
+ * A cheap check which tells if a markdown text can contain a reference at all. Texts without any of the following
+ * can't contain one and don't need to be rendered or parsed:
+ * <ul>
+ * <li>"#" or "GH-" followed by a digit (issues),</li>
+ * <li>"@" (users and commits in other repositories),</li>
+ * <li>at least 7 hex digits in a row (commits),</li>
+ * <li>"issues/", "pull/" or "commit/" (URLs).</li>
+ * </ul>
+ * The check looks at every character at most a few times and doesn't allocate any memory.
+ */
+final class ReferencePreFilter {
+
+    private static final int MIN_SHA_LENGTH = 7;
+
+    private ReferencePreFilter() {
+    }
+
+    /**
+     * @param markdown The markdown text, may be null.
+     * @return False if the text can't contain a reference.
+     */
+    static boolean mayContainReferences(String markdown) {
+
+        if (markdown == null) {
+            return false;
+        }
+
+        int hexRun = 0;
+        for (int i = 0; i < markdown.length(); i++) {
+
+            char c = markdown.charAt(i);
+
+            if (isHexDigit(c)) {
+                if (++hexRun == MIN_SHA_LENGTH) {
+                    return true;
+                }
+                continue;
+            }
+            hexRun = 0;
+
+            switch (c) {
+                case '@':
+                    return true;
+                case '#':
+                    if (isDigitAt(markdown, i + 1)) {
+                        return true;
+                    }
+                    break;
+                case '-':
+                    if (i >= 2 && markdown.regionMatches(true, i - 2, "GH", 0, 2) && isDigitAt(markdown, i + 1)) {
+                        return true;
+                    }
+                    break;
+                case '/':
+                    if (markdown.regionMatches(i - 6, "issues", 0, 6) ||
+                        markdown.regionMatches(i - 4, "pull", 0, 4) ||
+                        markdown.regionMatches(i - 6, "commit", 0, 6)) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isHexDigit(char c) {
+
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    private static boolean isDigitAt(String text, int index) {
+
+        return index < text.length() && text.charAt(index) >= '0' && text.charAt(index) <= '9';
+    }
+}
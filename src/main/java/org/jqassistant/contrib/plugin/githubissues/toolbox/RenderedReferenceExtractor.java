@@ -0,0 +1,111 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets the GitHub API render the markdown to HTML and reads the references from the anchors GitHub created for
+ * them. This is exact, but takes one request per markdown text.
+ *
+ * @see <a href="https://developer.github.com/v3/markdown/#render-an-arbitrary-markdown-document">REST-API</a>
+ */
+class RenderedReferenceExtractor implements ReferenceExtractor {
+
+    private static final String[] REPLACES = {"https://github.com/", "commit/", "issues/"};
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RenderedReferenceExtractor.class);
+
+    @Override
+    public MarkdownReferences extract(String markdown,
+                                      XMLGitHubRepository xmlGitHubRepository,
+                                      RestTool restTool) throws IOException, RequestFailedException {
+
+        LOGGER.debug("MARKDOWN:\n" + markdown + "\n");
+
+        String html = restTool.requestMarkdownToHtml(markdown);
+
+        LOGGER.debug("HTML:\n" + html + "\n");
+
+        return parseHtml(html);
+    }
+
+    /**
+     * Reads the references from markdown which was rendered by GitHub.
+     *
+     * @param html The rendered markdown.
+     * @return The references in the order they appear.
+     */
+    static MarkdownReferences parseHtml(String html) {
+
+        MarkdownReferences references = new MarkdownReferences();
+        Document htmlDocument = Jsoup.parse(html);
+
+        for (Element issueElement : htmlDocument.select("a.issue-link")) {
+
+            List<String> hrefCut = removeDispensableHrefPartsAndCutIt(issueElement.attr("data-url"));
+
+            references.addIssue(hrefCut.get(0), hrefCut.get(1), Integer.parseInt(hrefCut.get(2)));
+        }
+
+        for (Element commitElement : htmlDocument.select("a.commit-link")) {
+
+            List<String> hrefCut = removeDispensableHrefPartsAndCutIt(commitElement.attr("href"));
+
+            references.addCommit(hrefCut.get(0), hrefCut.get(1), hrefCut.get(2));
+        }
+
+        for (Element userElement : htmlDocument.select("a.user-mention")) {
+
+            List<String> hrefCut = removeDispensableHrefPartsAndCutIt(userElement.attr("href"));
+
+            references.addUser(hrefCut.get(0));
+        }
+
+        return references;
+    }
+
+    /**
+     * The HTML-anchors returned by the GitHub API contain URLs which can be used to extract IDs.
+     * To make the extraction more clear dispensable parts will be removed and the URL will be cut
+     * in sub parts.
+     *
+     * @param href The URL which shall be cleaned and cut.
+     * @return A list of importing sub parts.
+     */
+    private static List<String> removeDispensableHrefPartsAndCutIt(String href) {
+
+        List<String> result = new ArrayList<>();
+
+        for (String replace : REPLACES) {
+            href = href.replaceAll(replace, "");
+        }
+
+        // A user annotation consists of only one element: The user name.
+        if (!href.contains("/")) {
+            result.add(href);
+        } else {
+            // Issue and commit references are tuple (repoUser, repoName, commitSha | issueNumber).
+
+            // Get repository user:
+            result.add(href.substring(0, href.indexOf("/")));
+            href = href.substring(href.indexOf("/") + 1);
+
+            // Get repository name:
+            result.add(href.substring(0, href.indexOf("/")));
+            href = href.substring(href.indexOf("/") + 1);
+
+            // Get commit sha or issue number:
+            result.add(href);
+        }
+
+        return result;
+    }
+}
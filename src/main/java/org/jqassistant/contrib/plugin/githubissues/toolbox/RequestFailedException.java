@@ -12,11 +12,43 @@ package org.jqassistant.contrib.plugin.githubissues.toolbox;
  * the next one.</li>
  * <li>If the error is thrown on the markdown level, it won't resolve references but doesn't cancel the issue or
  * comment.</li>
+ * <li>If the error is thrown while a referenced issue is requested, only this reference is left out.</li>
  * </ul>
  */
 public class RequestFailedException extends Exception {
 
+    private final int status;
+    private final boolean rateLimited;
+
     RequestFailedException(String message) {
+        this(message, 0, false);
+    }
+
+    RequestFailedException(String message, int status, boolean rateLimited) {
         super(message);
+        this.status = status;
+        this.rateLimited = rateLimited;
+    }
+
+    /**
+     * @return The HTTP status of the response, 0 if the request failed for another reason, e.g. a GraphQL error.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return True, if the request got rejected because of the rate limit.
+     */
+    public boolean isRateLimited() {
+        return rateLimited;
+    }
+
+    /**
+     * @return True, if the request failed because the resource doesn't exist or the credentials don't grant access
+     * to it. Sending the request again won't help then, unlike after a server error or the rate limit.
+     */
+    public boolean isInaccessible() {
+        return !rateLimited && (status == 403 || status == 404 || status == 410 || status == 451);
     }
 }
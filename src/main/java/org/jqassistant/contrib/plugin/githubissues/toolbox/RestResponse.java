@@ -0,0 +1,23 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The parts of a successful response the {@link RestTool} needs, no matter if the response came from the server
+ * or from the {@link org.jqassistant.contrib.plugin.githubissues.toolbox.cache.HttpResponseCache}.
+ * <p>
+ * The entity is always read completely, so the connection of the response goes back to the pool before the entity
+ * gets processed.
+ */
+@AllArgsConstructor
+@Getter
+class RestResponse {
+
+    private final String entity;
+
+    /**
+     * The "Link" header which is used for pagination, may be null.
+     */
+    private final String link;
+}
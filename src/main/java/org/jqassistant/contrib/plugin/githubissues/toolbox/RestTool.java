@@ -2,49 +2,209 @@ package org.jqassistant.contrib.plugin.githubissues.toolbox;
 
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
 import org.jqassistant.contrib.plugin.githubissues.json.*;
-import org.jqassistant.contrib.plugin.githubissues.model.GitHubIssue;
-import org.jqassistant.contrib.plugin.githubissues.model.GitHubRepository;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.cache.HttpResponseCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.MediaType;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 /**
  * This class provides methods to retrieve information from the REST API of GitHub.
  * <p>
  * Every method is well documented and contains a link to the REST API documentation.
  * <p>
- * For every configured repository one instance of this class will be created.
+ * For every configured repository one instance of this class will be created. All instances send their requests
+ * through the same {@link HttpTransport}, the credentials of the repository get added to each request. The request
+ * methods may be called from multiple threads at once.
+ * <p>
+ * Every public request method has an asynchronous variant ending with "Async", which returns a
+ * {@link CompletableFuture} instead of blocking the calling thread. This is a facade over the blocking client: each
+ * request still occupies a thread of the {@link HttpTransport} while it is sent and received, and the requests use
+ * HTTP/1.1 over the pooled connections. There is no non-blocking or HTTP/2 client, Java 8 doesn't have one and the
+ * rate limit, the response cache and the compression statistics are built on the Jersey client.
  */
 public class RestTool {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RestTool.class);
 
+    /**
+     * How often a request gets sent if it was rejected because of the rate limit.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
     private String apiUrl;
     private XMLGitHubRepository xmlGitHubRepository;
     private Client client;
+    private HTTPBasicAuthFilter authFilter;
+    private RateLimitScheduler rateLimitScheduler;
+    private RateLimitScheduler graphQLRateLimitScheduler;
+    private HttpResponseCache responseCache;
+    private HttpTransport httpTransport;
 
-    public RestTool(String apiUrl, XMLGitHubRepository xmlGitHubRepository) {
+    /**
+     * @param apiUrl              The URL of the GitHub API.
+     * @param xmlGitHubRepository The repository which shall be requested.
+     * @param httpTransport       The HTTP client shared by all repositories.
+     * @param responseCache       The cache for conditional requests or null if responses shall not be cached.
+     */
+    public RestTool(String apiUrl,
+                    XMLGitHubRepository xmlGitHubRepository,
+                    HttpTransport httpTransport,
+                    HttpResponseCache responseCache) {
 
         this.apiUrl = apiUrl;
-        client = Client.create();
+        client = httpTransport.getClient();
 
-        client.removeAllFilters();
-        client.addFilter(new HTTPBasicAuthFilter(
+        authFilter = new HTTPBasicAuthFilter(
             xmlGitHubRepository.getCredentials().getUser(),
-            xmlGitHubRepository.getCredentials().getPassword()));
+            xmlGitHubRepository.getCredentials().getPassword());
 
         this.xmlGitHubRepository = xmlGitHubRepository;
+
+        rateLimitScheduler = RateLimitScheduler.forAccount(apiUrl, xmlGitHubRepository.getCredentials().getUser());
+
+        // GitHub keeps a separate rate limit for the GraphQL API:
+        graphQLRateLimitScheduler = RateLimitScheduler.forAccount(
+            getGraphQLUrl(apiUrl), xmlGitHubRepository.getCredentials().getUser());
+
+        this.responseCache = responseCache;
+        this.httpTransport = httpTransport;
+    }
+
+    /**
+     * @return The user of the credentials this tool sends its requests with.
+     */
+    public String getCredentialUser() {
+
+        return xmlGitHubRepository.getCredentials().getUser();
+    }
+
+    /**
+     * Creates a web resource which gets requested with the credentials of the repository.
+     *
+     * @param url The absolute URL.
+     * @return The web resource.
+     */
+    private WebResource resource(String url) {
+
+        WebResource webResource = client.resource(url);
+        webResource.addFilter(authFilter);
+        return webResource;
+    }
+
+    /**
+     * Sends a GET request as soon as the {@link RateLimitScheduler} allows it.
+     * <p>
+     * If a response for the same URL was cached during an earlier scan, the request is sent as conditional request.
+     * In case the server answers with "304 Not Modified" the cached response is returned.
+     *
+     * @param webResource The requested web resource.
+     * @return The entity and the "Link" header of the response.
+     * @throws IOException            If the thread gets interrupted while waiting for the rate limit.
+     * @throws RequestFailedException If the request fails.
+     */
+    private RestResponse get(WebResource webResource) throws IOException, RequestFailedException {
+
+        String url = webResource.getURI().toString();
+        String user = xmlGitHubRepository.getCredentials().getUser();
+        String password = xmlGitHubRepository.getCredentials().getPassword();
+
+        HttpResponseCache.Entry cached = responseCache == null ? null : responseCache.get(url, user, password);
+
+        ClientResponse response = execute(rateLimitScheduler, () -> {
+            WebResource.Builder builder = webResource.accept(MediaType.APPLICATION_JSON_TYPE);
+            if (cached != null && cached.getETag() != null) {
+                builder = builder.header("If-None-Match", cached.getETag());
+            }
+            if (cached != null && cached.getLastModified() != null) {
+                builder = builder.header("If-Modified-Since", cached.getLastModified());
+            }
+            return builder.get(ClientResponse.class);
+        });
+
+        if (cached != null && response.getStatus() == 304) {
+            response.close();
+            return new RestResponse(cached.getBody(), cached.getLink());
+        }
+
+        String link = getLinkHeader(response);
+        String entity = raiseErrorsIfNeeded(webResource, response);
+
+        if (responseCache != null) {
+            responseCache.put(url, user, password, new HttpResponseCache.Entry(
+                response.getHeaders().getFirst("ETag"),
+                response.getHeaders().getFirst("Last-Modified"),
+                link,
+                entity));
+        }
+
+        return new RestResponse(entity, link);
+    }
+
+    /**
+     * Sends a POST request as soon as the {@link RateLimitScheduler} allows it.
+     *
+     * @param webResource The requested web resource.
+     * @param entity      The request payload.
+     * @return The response.
+     * @throws IOException If the thread gets interrupted while waiting for the rate limit.
+     */
+    private ClientResponse post(WebResource webResource, String entity) throws IOException {
+
+        return execute(rateLimitScheduler,
+            () -> webResource.accept(MediaType.APPLICATION_JSON_TYPE).post(ClientResponse.class, entity));
+    }
+
+    /**
+     * Every request goes through this method. It waits for the {@link RateLimitScheduler}, passes the rate limit
+     * headers of the response back to it and repeats requests which got rejected because of the rate limit.
+     *
+     * @param scheduler The scheduler of the rate limit the request counts against.
+     * @param request   The request that shall be sent.
+     * @return The response.
+     * @throws IOException If the thread gets interrupted while waiting for the rate limit.
+     */
+    private static ClientResponse execute(RateLimitScheduler scheduler,
+                                          Supplier<ClientResponse> request) throws IOException {
+
+        for (int attempt = 1; ; attempt++) {
+
+            try {
+                scheduler.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the GitHub rate limit.");
+            }
+
+            ClientResponse response = request.get();
+            scheduler.update(response);
+
+            if (attempt < MAX_ATTEMPTS && RateLimitScheduler.isRateLimited(response)) {
+                LOGGER.warn("Request got rejected because of the rate limit (status " + response.getStatus() +
+                    "), sending it again.");
+                response.close();
+                continue;
+            }
+
+            return response;
+        }
     }
 
     /**
@@ -86,7 +246,9 @@ public class RestTool {
             "Entity: \n" +
             response.getEntity(String.class) + "\n" +
             "Request: \n" +
-            "> URL: \"" + webResource.getURI().toString() + "\"\n");
+            "> URL: \"" + webResource.getURI().toString() + "\"\n",
+            response.getStatus(),
+            RateLimitScheduler.isRateLimited(response));
     }
 
     /**
@@ -108,7 +270,9 @@ public class RestTool {
                 "> Entity:" +
                 "\n----------------------\n" +
                 entity +
-                "\n----------------------\n");
+                "\n----------------------\n",
+                e.getStatus(),
+                e.isRateLimited());
         }
     }
 
@@ -128,97 +292,111 @@ public class RestTool {
                                                        String repoName,
                                                        int issueNumber) throws IOException, RequestFailedException {
 
-        WebResource issueWebResource = client.resource(
+        WebResource issueWebResource = resource(
             apiUrl + "repos/" + repoUser + "/" +
                 repoName + "/issues/" + issueNumber);
 
-        String response = raiseErrorsIfNeeded(issueWebResource, issueWebResource
-            .accept(MediaType.APPLICATION_JSON_TYPE)
-            .get(ClientResponse.class));
+        String response = get(issueWebResource).getEntity();
 
         return JSONParser.getInstance().parseIssue(response);
     }
 
     /**
-     * Requests all issues related to a specific repository.
+     * Requests a repository, only to find out if it exists and is accessible with the credentials.
      *
-     * @param gitHubRepository The repository descriptor for which the issues shall be retrieved.
+     * @param repoUser The owner of the repository.
+     * @param repoName The name of the repository.
+     * @throws IOException            If the thread gets interrupted while waiting for the rate limit.
+     * @throws RequestFailedException If the request fails.
+     * @see <a href="https://developer.github.com/v3/repos/#get">REST-API</a>
+     */
+    public void requestRepository(String repoUser, String repoName) throws IOException, RequestFailedException {
+
+        get(resource(apiUrl + "repos/" + repoUser + "/" + repoName));
+    }
+
+    /**
+     * Requests all issues of the repository, ordered by the time they were last updated.
+     *
+     * The pages are requested and parsed one by one while the issues are read, the iterator must be closed.
+     *
+     * @param since If set, only issues which were updated at or after this time get requested.
      * @return The response as JSON-POJOs.
-     * @throws IOException If parsing the response fails.
      * @see <a href="https://developer.github.com/v3/issues/#list-issues-for-a-repository">REST-API</a>
      */
-    public List<JSONIssue> requestIssuesByRepository(GitHubRepository gitHubRepository) throws IOException {
-
-        WebResource issuesWebResource = client.resource(
-            apiUrl + "repos/" + gitHubRepository.getUser() + "/" +
-                gitHubRepository.getName() + "/issues?state=all&per_page=100");
+    public PageIterator<JSONIssue> requestIssuesByRepository(ZonedDateTime since) {
 
-        List<String> jsonArrays = retrieveAllPages(issuesWebResource);
-        List<JSONIssue> jsonIssues = new ArrayList<>();
+        return new PageIterator<>(this, httpTransport,
+            apiUrl + "repos/" + xmlGitHubRepository.getUser() + "/" +
+                xmlGitHubRepository.getName() + "/issues?state=all&sort=updated&direction=asc&per_page=100" +
+                sinceParameter(since),
+            JSONIssue.class);
+    }
 
-        for (String jsonArray : jsonArrays) {
-            jsonIssues.addAll(JSONParser.getInstance().parseIssues(jsonArray));
-        }
+    /**
+     * Requests one page of a paginated list and reads it completely, so the connection can be used for the next
+     * request right away. See {@link PageIterator}.
+     *
+     * @param url The URL of the page.
+     * @return The response.
+     * @throws IOException            If the thread gets interrupted while waiting for the rate limit.
+     * @throws RequestFailedException If the request fails.
+     */
+    RestResponse requestPage(String url) throws IOException, RequestFailedException {
 
-        return jsonIssues;
+        return get(resource(url));
     }
 
     /**
      * Resolves the pagination function from the GitHub-REST API.
      * <p>
-     * First, the original webResource gets resolved. After that, it looks for "Link" headers and follows them if they
-     * are set.
-     * <p>
-     * The result is an array of JSON arrays.
+     * The elements of all pages are collected in one list.
      *
-     * @param webResource The initial web resource.
-     * @return An array of JSON arrays.
+     * @param url  The URL of the first page.
+     * @param type The type of the elements.
+     * @param <T>  The type of the elements.
+     * @return The elements of all pages.
+     * @throws IOException If parsing the response fails.
      */
-    private List<String> retrieveAllPages(WebResource webResource) {
-
+    private <T> List<T> requestAllPages(String url, Class<T> type) throws IOException {
 
-        List<String> jsonStrings = new ArrayList<>();
+        List<T> elements = new ArrayList<>();
 
-        ClientResponse clientResponse;
-        String nextPaginationUrl = null;
-
-        do {
-
-            // Override the next URL everytime after the first:
-            if (nextPaginationUrl != null) {
-                webResource = client.resource(nextPaginationUrl);
-
-                LOGGER.info("Requesting next page: \"" + nextPaginationUrl + "\"");
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    LOGGER.error("Interrupted Exception: ", e);
-                }
+        try (PageIterator<T> pages = new PageIterator<>(this, httpTransport, url, type)) {
+            while (pages.hasNext()) {
+                elements.add(pages.next());
             }
+        }
 
-            clientResponse = webResource.get(ClientResponse.class);
-
-            String entity;
-            try {
+        return elements;
+    }
 
-                entity = raiseErrorsIfNeeded(webResource, clientResponse);
-            } catch (RequestFailedException e) {
+    /**
+     * Joins the values of the "Link" headers of a response.
+     *
+     * @param clientResponse The ClientResponse which is used to extract the header.
+     * @return The header value or null if the response has no "Link" header.
+     */
+    private static String getLinkHeader(ClientResponse clientResponse) {
 
-                // If an error occurs:
-                LOGGER.warn("Pagination REST failure:", e);
-                return jsonStrings;
-            }
+        List<String> values = clientResponse.getHeaders().get("Link");
 
-            nextPaginationUrl = getNextPaginationUrl(clientResponse);
-            jsonStrings.add(entity);
+        return values == null || values.isEmpty() ? null : String.join(", ", values);
+    }
 
-        } while (nextPaginationUrl != null);
+    /**
+     * Extracts the "next" URL from a "Link" header.
+     *
+     * @param link The value of the "Link" header or null.
+     * @return The URL as String or null if no URL is returned by the server.
+     */
+    static String getNextPaginationUrl(String link) {
 
-        return jsonStrings;
+        return getPaginationUrl(link, "next");
     }
 
     /**
-     * Extracts the "next" URL from a "Link" header.
+     * Extracts the URL with the given relation from a "Link" header.
      * </p>
      * e.g.
      * <p>
@@ -226,39 +404,32 @@ public class RestTool {
      * Link: <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=2>; rel="next",
      * <https://api.github.com/search/code?q=addClass+user%3Amozilla&page=34>; rel="last"
      *
-     * @param clientResponse The ClientResponse which is used to extract the URL.
+     * @param link     The value of the "Link" header or null.
+     * @param relation The relation, e.g. "next" or "last".
      * @return The URL as String or null if no URL is returned by the server.
      */
-    private String getNextPaginationUrl(ClientResponse clientResponse) {
-
-        for (Map.Entry<String, List<String>> header : clientResponse.getHeaders().entrySet()) {
+    static String getPaginationUrl(String link, String relation) {
 
-            /*
-            The better solution clientResponse.getLinks() doesn't work.
+        /*
+        The better solution clientResponse.getLinks() doesn't work.
 
-            Leads to:
+        Leads to:
 
-            java.lang.IllegalArgumentException: java.text.ParseException: Expected separator ';' instead of ','
-                at com.sun.jersey.core.header.LinkHeader.valueOf(LinkHeader.java:106)
-                at com.sun.jersey.core.header.LinkHeaders.<init>(LinkHeaders.java:62)
-                at com.sun.jersey.api.client.WebResourceLinkHeaders.<init>(WebResourceLinkHeaders.java:55)
-                at com.sun.jersey.api.client.ClientResponse.getLinks(ClientResponse.java:813)
+        java.lang.IllegalArgumentException: java.text.ParseException: Expected separator ';' instead of ','
+            at com.sun.jersey.core.header.LinkHeader.valueOf(LinkHeader.java:106)
+            at com.sun.jersey.core.header.LinkHeaders.<init>(LinkHeaders.java:62)
+            at com.sun.jersey.api.client.WebResourceLinkHeaders.<init>(WebResourceLinkHeaders.java:55)
+            at com.sun.jersey.api.client.ClientResponse.getLinks(ClientResponse.java:813)
 
-            Therefore a custom parser must be written:
-             */
-            if (header.getKey().equals("Link")) {
-                for (String s : header.getValue()) {
-                    if (s.contains("rel=\"next\"")) {
+        Therefore a custom parser must be written:
+         */
+        String rel = "rel=\"" + relation + "\"";
+        if (link != null && link.contains(rel)) {
 
-                        String temp = s;
+            // Cut the rest of the link:
+            String temp = link.substring(0, link.indexOf(rel));
 
-                        // Cut the rest of the link:
-                        temp = temp.substring(0, temp.indexOf("rel=\"next\""));
-
-                        return temp.substring(temp.lastIndexOf('<') + 1, temp.lastIndexOf('>'));
-                    }
-                }
-            }
+            return temp.substring(temp.lastIndexOf('<') + 1, temp.lastIndexOf('>'));
         }
 
         return null;
@@ -266,51 +437,138 @@ public class RestTool {
 
     /**
      * Requests all comments related to a specific issue.
+     * <p>
+     * The issue is identified by its number instead of its descriptor as this method gets called by worker threads
+     * which must not access the store.
      *
-     * @param gitHubIssueDescriptor The issue descriptor for which the comments shall be retrieved.
+     * The number of comments the list of issues reported plans the requests: no request is needed without comments,
+     * up to 100 comments fit into one page and the pages of more comments can be requested in parallel right away.
+     *
+     * @param issueNumber The number of the issue for which the comments shall be retrieved.
+     * @param comments    The number of comments of the issue.
      * @return The response as JSON-POJOs.
      * @throws IOException If parsing the response fails.
      * @see <a href="https://developer.github.com/v3/issues/comments/#list-comments-on-an-issue">REST-API</a>
      */
-    public List<JSONComment> requestCommentsByIssue(GitHubIssue gitHubIssueDescriptor) throws IOException {
+    public List<JSONComment> requestCommentsByIssue(int issueNumber, int comments) throws IOException {
+
+        if (comments == 0) {
+            return new ArrayList<>();
+        }
+
+        List<JSONComment> jsonComments = new ArrayList<>(comments);
 
-        WebResource commentsWebResource = client.resource(
+        try (PageIterator<JSONComment> pages = new PageIterator<>(this, httpTransport,
             apiUrl + "repos/" + xmlGitHubRepository.getUser() + "/" +
-                xmlGitHubRepository.getName() + "/issues/" + gitHubIssueDescriptor.getNumber() + "/comments?per_page=100");
+                xmlGitHubRepository.getName() + "/issues/" + issueNumber + "/comments?per_page=100",
+            JSONComment.class, (comments + 99) / 100)) {
 
-        List<String> jsonArrays = retrieveAllPages(commentsWebResource);
-        List<JSONComment> jsonComments = new ArrayList<>();
+            while (pages.hasNext()) {
+                jsonComments.add(pages.next());
+            }
+        }
 
-        for (String jsonArray : jsonArrays) {
-            jsonComments.addAll(JSONParser.getInstance().parseComments(jsonArray));
+        return jsonComments;
+    }
+
+    /**
+     * Requests all comments of the repository and groups them by the number of the issue they belong to.
+     * <p>
+     * Compared to {@link #requestCommentsByIssue(int, int)} this needs one request per 100 comments instead of at least
+     * one request per issue. The comments of an issue keep the order in which they were created.
+     *
+     * @param since If set, only comments which were updated at or after this time get requested.
+     * @return The comments as JSON-POJOs, grouped by issue number.
+     * @throws IOException If parsing the response fails.
+     * @see <a href="https://developer.github.com/v3/issues/comments/#list-comments-in-a-repository">REST-API</a>
+     */
+    public Map<Integer, List<JSONComment>> requestCommentsByRepository(ZonedDateTime since) throws IOException {
+
+        Map<Integer, List<JSONComment>> jsonComments = new HashMap<>();
+
+        try (PageIterator<JSONComment> pages = new PageIterator<>(this, httpTransport,
+            apiUrl + "repos/" + xmlGitHubRepository.getUser() + "/" +
+                xmlGitHubRepository.getName() + "/issues/comments?sort=created&direction=asc&per_page=100" +
+                sinceParameter(since),
+            JSONComment.class)) {
+
+            while (pages.hasNext()) {
+                JSONComment jsonComment = pages.next();
+
+                // The issue URL ends with the issue number, e.g. ".../repos/octocat/Hello-World/issues/1347":
+                String issueUrl = jsonComment.getIssueUrl();
+                int issueNumber = Integer.parseInt(issueUrl.substring(issueUrl.lastIndexOf('/') + 1));
+
+                jsonComments.computeIfAbsent(issueNumber, number -> new ArrayList<>()).add(jsonComment);
+            }
         }
 
         return jsonComments;
     }
 
+    private static String sinceParameter(ZonedDateTime since) {
+
+        // GitHub expects an ISO 8601 timestamp in UTC, e.g. "2011-04-22T13:33:48Z":
+        return since == null ? "" : "&since=" + since.toInstant();
+    }
+
     /**
-     * Requests all Milestones related to a specific repository.
+     * Requests all Milestones of the repository.
      *
-     * @param gitHubRepository The repository descriptor for which the milestones shall be
-     *                         retrieved.
      * @return The response as JSON-POJOs.
      * @throws IOException If parsing the response fails.
      * @see <a href="https://developer.github.com/v3/issues/milestones/#list-milestones-for-a-repository">REST-API</a>
      */
-    public List<JSONMilestone> requestMilestonesByRepository(GitHubRepository gitHubRepository) throws IOException {
+    public List<JSONMilestone> requestMilestonesByRepository() throws IOException {
+
+        return requestAllPages(
+            apiUrl + "repos/" + xmlGitHubRepository.getUser() + "/" +
+                xmlGitHubRepository.getName() + "/milestones?state=all&per_page=100",
+            JSONMilestone.class);
+    }
+
+    /**
+     * Requests the merge data of all pull requests of the repository, indexed by their number.
+     * <p>
+     * Compared to {@link #requestPullRequestByAbsoluteUrl(String)} this needs one request per 100 pull requests
+     * instead of one request per pull request. Only the number, the update timestamp and the merge data are kept.
+     * <p>
+     * The list of pull requests can't be filtered by time. If a time is given, the pull requests are requested in
+     * descending order of their last update until the first one which was updated before that time.
+     *
+     * @param since If set, only pull requests which were updated at or after this time get requested.
+     * @return The pull requests as JSON-POJOs, indexed by number.
+     * @throws IOException If parsing the response fails.
+     * @see <a href="https://developer.github.com/v3/pulls/#list-pull-requests">REST-API</a>
+     */
+    public Map<Integer, JSONIssue> requestPullRequestsByRepository(ZonedDateTime since) throws IOException {
+
+        Map<Integer, JSONIssue> jsonPullRequests = new HashMap<>();
 
-        WebResource milestonesWebResource = client.resource(
-            apiUrl + "repos/" + gitHubRepository.getUser() + "/" +
-                gitHubRepository.getName() + "/milestones?state=all&per_page=100");
+        try (PageIterator<JSONIssue> pages = new PageIterator<>(this, httpTransport,
+            apiUrl + "repos/" + xmlGitHubRepository.getUser() + "/" + xmlGitHubRepository.getName() +
+                (since == null ? "/pulls?state=all&per_page=100" :
+                    "/pulls?state=all&sort=updated&direction=desc&per_page=100"),
+            JSONIssue.class)) {
 
-        List<String> jsonArrays = retrieveAllPages(milestonesWebResource);
-        List<JSONMilestone> jsonMilestones = new ArrayList<>();
+            while (pages.hasNext()) {
+                JSONIssue jsonPullRequest = pages.next();
+
+                if (since != null && ZonedDateTime.parse(jsonPullRequest.getUpdatedAt()).isBefore(since)) {
+                    break;
+                }
 
-        for (String jsonArray : jsonArrays) {
-            jsonMilestones.addAll(JSONParser.getInstance().parseMilestones(jsonArray));
+                // The bodies and everything else of the listing is not needed:
+                JSONIssue mergeData = new JSONIssue();
+                mergeData.setNumber(jsonPullRequest.getNumber());
+                mergeData.setUpdatedAt(jsonPullRequest.getUpdatedAt());
+                mergeData.setMergedAt(jsonPullRequest.getMergedAt());
+                mergeData.setMergeCommitSha(jsonPullRequest.getMergeCommitSha());
+                jsonPullRequests.put(mergeData.getNumber(), mergeData);
+            }
         }
 
-        return jsonMilestones;
+        return jsonPullRequests;
     }
 
     /**
@@ -327,10 +585,9 @@ public class RestTool {
      */
     public JSONIssue requestPullRequestByAbsoluteUrl(String url) throws IOException, RequestFailedException {
 
-        WebResource webResource = client.resource(url);
+        WebResource webResource = resource(url);
 
-        String entity = raiseErrorsIfNeeded(webResource,
-            webResource.accept(MediaType.APPLICATION_JSON_TYPE).get(ClientResponse.class));
+        String entity = get(webResource).getEntity();
 
         return JSONParser.getInstance().parsePullRequest(entity);
     }
@@ -348,11 +605,12 @@ public class RestTool {
      * @param markdown The markdown that shall be converted.
      * @return The response as HTML-String or an empty String if the request failed.
      * @throws JsonProcessingException If the org.jqassistant.contrib.plugin.githubissues.json creation for the request payload fails.
+     * @throws IOException             If the thread gets interrupted while waiting for the rate limit.
      * @see <a href="https://developer.github.com/v3/markdown/#render-an-arbitrary-markdown-document">REST-API</a>
      */
-    String requestMarkdownToHtml(String markdown) throws JsonProcessingException, RequestFailedException {
+    String requestMarkdownToHtml(String markdown) throws IOException, RequestFailedException {
 
-        WebResource webResource = client.resource(apiUrl + "markdown");
+        WebResource webResource = resource(apiUrl + "markdown");
 
         JSONMarkdownRequest jsonMarkdownRequest = new JSONMarkdownRequest(markdown, xmlGitHubRepository);
 
@@ -360,7 +618,230 @@ public class RestTool {
 
         return raiseErrorsIfNeeded(
             webResource,
-            webResource.accept(MediaType.APPLICATION_JSON_TYPE).post(ClientResponse.class, json),
+            post(webResource, json),
+            json);
+    }
+
+    /**
+     * Sends a query to the GraphQL API of GitHub.
+     * <p>
+     * GraphQL reports most errors with status 200 and an "errors" member, these are raised like failed requests.
+     *
+     * @param query     The query.
+     * @param variables The values of the variables used by the query.
+     * @return The "data" member of the response.
+     * @throws IOException            If parsing the response fails.
+     * @throws RequestFailedException If the request fails or the response contains errors.
+     * @see <a href="https://developer.github.com/v4/guides/forming-calls/">GraphQL-API</a>
+     */
+    public JsonNode requestGraphQL(String query, Map<String, Object> variables) throws IOException, RequestFailedException {
+
+        WebResource webResource = resource(getGraphQLUrl(apiUrl));
+
+        String json = JSONParser.getInstance().parseGraphQLRequest(query, variables);
+
+        String entity = raiseErrorsIfNeeded(
+            webResource,
+            execute(graphQLRateLimitScheduler,
+                () -> webResource.accept(MediaType.APPLICATION_JSON_TYPE).post(ClientResponse.class, json)),
             json);
+
+        JsonNode response = JSONParser.getInstance().parseTree(entity);
+
+        if (response.hasNonNull("errors")) {
+            throw new RequestFailedException("GraphQL request failed:\n\n" +
+                "Errors: \n" + response.get("errors") + "\n" +
+                "Request: \n" +
+                "> URL: \"" + webResource.getURI().toString() + "\"\n" +
+                "> Variables: " + variables + "\n");
+        }
+
+        return response.get("data");
+    }
+
+    /**
+     * Asynchronous variant of {@link #requestIssueByRepositoryAndNumber(String, String, int)}.
+     *
+     * @param repoUser    The owner of the repository.
+     * @param repoName    The name of the repository.
+     * @param issueNumber The number of the issue.
+     * @return The issue, once it is received.
+     */
+    public CompletableFuture<JSONIssue> requestIssueByRepositoryAndNumberAsync(String repoUser,
+                                                                             String repoName,
+                                                                             int issueNumber) {
+
+        return async(() -> requestIssueByRepositoryAndNumber(repoUser, repoName, issueNumber));
+    }
+
+    /**
+     * Asynchronous variant of {@link #requestRepository(String, String)}.
+     *
+     * @param repoUser The owner of the repository.
+     * @param repoName The name of the repository.
+     * @return Completes normally if the repository is accessible.
+     */
+    public CompletableFuture<Void> requestRepositoryAsync(String repoUser, String repoName) {
+
+        return async(() -> {
+            requestRepository(repoUser, repoName);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronous variant of {@link #requestIssuesByRepository(ZonedDateTime)}.
+     * <p>
+     * Unlike the {@link PageIterator} this keeps all issues in memory until the last page is received.
+     *
+     * @param since If set, only issues which were updated at or after this time get requested.
+     * @return The issues, once all pages are received.
+     */
+    public CompletableFuture<List<JSONIssue>> requestIssuesByRepositoryAsync(ZonedDateTime since) {
+
+        return async(() -> {
+            List<JSONIssue> jsonIssues = new ArrayList<>();
+            try (PageIterator<JSONIssue> pages = requestIssuesByRepository(since)) {
+                while (pages.hasNext()) {
+                    jsonIssues.add(pages.next());
+                }
+            }
+            return jsonIssues;
+        });
+    }
+
+    /**
+     * Asynchronous variant of {@link #requestCommentsByIssue(int, int)}.
+     *
+     * @param issueNumber The number of the issue for which the comments shall be retrieved.
+     * @param comments    The number of comments of the issue.
+     * @return The comments, once all pages are received.
+     */
+    public CompletableFuture<List<JSONComment>> requestCommentsByIssueAsync(int issueNumber, int comments) {
+
+        if (comments == 0) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        return async(() -> requestCommentsByIssue(issueNumber, comments));
+    }
+
+    /**
+     * Asynchronous variant of {@link #requestCommentsByRepository(ZonedDateTime)}.
+     *
+     * @param since If set, only comments which were updated at or after this time get requested.
+     * @return The comments grouped by issue number, once all pages are received.
+     */
+    public CompletableFuture<Map<Integer, List<JSONComment>>> requestCommentsByRepositoryAsync(ZonedDateTime since) {
+
+        return async(() -> requestCommentsByRepository(since));
+    }
+
+    /**
+     * Asynchronous variant of {@link #requestMilestonesByRepository()}.
+     *
+     * @return The milestones, once all pages are received.
+     */
+    public CompletableFuture<List<JSONMilestone>> requestMilestonesByRepositoryAsync() {
+
+        return async(this::requestMilestonesByRepository);
+    }
+
+    /**
+     * Asynchronous variant of {@link #requestPullRequestsByRepository(ZonedDateTime)}.
+     *
+     * @param since If set, only pull requests which were updated at or after this time get requested.
+     * @return The pull requests indexed by number, once all pages are received.
+     */
+    public CompletableFuture<Map<Integer, JSONIssue>> requestPullRequestsByRepositoryAsync(ZonedDateTime since) {
+
+        return async(() -> requestPullRequestsByRepository(since));
+    }
+
+    /**
+     * Asynchronous variant of {@link #requestPullRequestByAbsoluteUrl(String)}.
+     *
+     * @param url An absolute url as String.
+     * @return The pull request, once it is received.
+     */
+    public CompletableFuture<JSONIssue> requestPullRequestByAbsoluteUrlAsync(String url) {
+
+        return async(() -> requestPullRequestByAbsoluteUrl(url));
+    }
+
+    /**
+     * Asynchronous variant of {@link #requestGraphQL(String, Map)}.
+     *
+     * @param query     The query.
+     * @param variables The values of the variables used by the query.
+     * @return The "data" member of the response, once it is received.
+     */
+    public CompletableFuture<JsonNode> requestGraphQLAsync(String query, Map<String, Object> variables) {
+
+        return async(() -> requestGraphQL(query, variables));
+    }
+
+    /**
+     * Sends a blocking request on a thread of the {@link HttpTransport}, so the caller can go on or compose several
+     * requests. The rate limit, the response cache and the connection pool apply like to synchronous requests.
+     * <p>
+     * The future completes exceptionally with the {@link IOException} or {@link RequestFailedException} the
+     * synchronous request would have thrown.
+     *
+     * @param request The synchronous request.
+     * @param <T>     The type of the response.
+     * @return The response, once it is received.
+     */
+    private <T> CompletableFuture<T> async(AsyncRequest<T> request) {
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            httpTransport.getRequestExecutor().execute(() -> {
+                try {
+                    future.complete(request.send());
+                } catch (Exception | Error e) {
+                    // Every failure completes the future, the caller would wait forever otherwise:
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new InterruptedIOException("The HTTP transport was closed."));
+        }
+        return future;
+    }
+
+    /**
+     * A request which is sent by {@link #async(AsyncRequest)}.
+     */
+    @FunctionalInterface
+    private interface AsyncRequest<T> {
+
+        T send() throws IOException, RequestFailedException;
+    }
+
+    /**
+     * Tells how many requests of this repository may be in flight at the same time, see
+     * {@link RateLimitScheduler#concurrencyLimit(int)}.
+     *
+     * @param max The limit which is returned as long as plenty of the rate limit is left.
+     * @return A number between 1 and max.
+     */
+    public int getConcurrencyLimit(int max) {
+
+        return rateLimitScheduler.concurrencyLimit(max);
+    }
+
+    /**
+     * The GraphQL API of GitHub Enterprise is located next to the REST API, e.g. "https://host/api/graphql" for
+     * "https://host/api/v3/".
+     *
+     * @param apiUrl The URL of the REST API.
+     * @return The URL of the GraphQL API.
+     */
+    static String getGraphQLUrl(String apiUrl) {
+
+        if (apiUrl.endsWith("/v3/")) {
+            return apiUrl.substring(0, apiUrl.length() - "v3/".length()) + "graphql";
+        }
+        return apiUrl + "graphql";
     }
 }
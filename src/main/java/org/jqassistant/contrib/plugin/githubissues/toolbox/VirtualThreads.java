@@ -0,0 +1,55 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Gives access to the virtual threads of Java 21 while the plugin is still compiled for Java 8.
+ * <p>
+ * The executor is looked up by reflection once, so the same JAR runs on every Java version and uses virtual threads
+ * where they exist.
+ */
+public final class VirtualThreads {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookUp();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return True if the running JVM supports virtual threads.
+     */
+    public static boolean isAvailable() {
+
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for every task. Virtual threads never keep the JVM from
+     * terminating.
+     *
+     * @return The executor or null if the running JVM doesn't support virtual threads.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    private static Method lookUp() {
+
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes the files of the caches. A file is written to a temporary file next to it first which then replaces the
+ * file, so a scan which gets killed while writing never leaves a truncated file behind and concurrent writes of the
+ * same file don't mix.
+ */
+final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Replaces a file with new content. The directory of the file gets created if it doesn't exist.
+     *
+     * @param target  The file.
+     * @param prefix  The prefix of the temporary file.
+     * @param content Writes the content.
+     * @throws IOException If the file can't be written. The previous content of the file is left untouched then.
+     */
+    static void writeAtomically(File target, String prefix, IOConsumer<DataOutputStream> content) throws IOException {
+
+        File directory = target.getAbsoluteFile().getParentFile();
+        Files.createDirectories(directory.toPath());
+
+        File temp = File.createTempFile(prefix, ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                content.accept(out);
+            }
+            // Without ATOMIC_MOVE the file gets deleted before it is replaced, so a concurrent reader could miss it:
+            Files.move(temp.toPath(), target.toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            // Only left over if the write or the move failed:
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * A consumer which may fail with an {@link IOException}.
+     *
+     * @param <T> The type of the consumed value.
+     */
+    @FunctionalInterface
+    interface IOConsumer<T> {
+
+        void accept(T value) throws IOException;
+    }
+}
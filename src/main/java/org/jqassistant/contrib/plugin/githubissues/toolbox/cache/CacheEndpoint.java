@@ -1,6 +1,8 @@
 package org.jqassistant.contrib.plugin.githubissues.toolbox.cache;
 
 import com.buschmais.jqassistant.core.store.api.Store;
+import com.buschmais.jqassistant.core.store.api.model.Descriptor;
+import com.buschmais.xo.api.Query;
 import org.jqassistant.contrib.plugin.githubissues.ids.*;
 import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
 import org.jqassistant.contrib.plugin.githubissues.json.*;
@@ -12,6 +14,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
@@ -24,6 +31,12 @@ import java.time.ZonedDateTime;
  * They check if a certain descriptor instance exists. If it does
  * exist, they return the instance. Otherwise they create a new one and save it in the
  * {@link Store} and in the {@link DescriptorCache}.
+ * <p>
+ * Descriptors which were created by a previous scan get loaded into the {@link DescriptorCache} by
+ * {@link #loadStoredDescriptors()}. Issues, milestones and comments found this way get updated in place.
+ * <p>
+ * Only {@link #prefetchGitHubIssue(String, String, int, RestTool)} may be called by other threads than the one which
+ * writes to the store.
  */
 public class CacheEndpoint {
 
@@ -32,12 +45,129 @@ public class CacheEndpoint {
     private Store store;
     private DescriptorCache descriptorCache;
 
+    private InFlightIssueRequests issueRequests = new InFlightIssueRequests();
+    private UnresolvableReferenceCache unresolvableReferences = new UnresolvableReferenceCache(0);
+
+    // The repositories which were requested after one of their issues couldn't be requested:
+    private Set<String> probedRepositories = ConcurrentHashMap.newKeySet();
+
+    // The IDs of the issues in the descriptor cache, for the threads which prefetch referenced issues:
+    private Set<IssueID> knownIssues = ConcurrentHashMap.newKeySet();
+
+    private int createdDescriptors;
+
     public CacheEndpoint(Store store) {
 
         this.store = store;
         descriptorCache = new DescriptorCache();
     }
 
+    /**
+     * @param unresolvableReferences The cache which remembers referenced issues that couldn't be requested. Must be
+     *                               set before the scan starts.
+     */
+    public void setUnresolvableReferenceCache(UnresolvableReferenceCache unresolvableReferences) {
+
+        this.unresolvableReferences = unresolvableReferences;
+    }
+
+    /**
+     * Loads all GitHub descriptors which already exist in the store into the {@link DescriptorCache}, so a repeated
+     * scan updates them instead of creating duplicates.
+     * <p>
+     * This takes one query per descriptor type, not one query per descriptor.
+     */
+    public void loadStoredDescriptors() {
+
+        for (GitHubRepository repository : query("MATCH (d:GitHub:Repository) RETURN d", GitHubRepository.class)) {
+            descriptorCache.put(repository, RepositoryID.builder()
+                .user(repository.getUser())
+                .name(repository.getName())
+                .build());
+        }
+
+        for (GitHubUser user : query("MATCH (d:GitHub:User) RETURN d", GitHubUser.class)) {
+            descriptorCache.put(user);
+        }
+
+        for (GitHubLabel label : query("MATCH (d:GitHub:Label) RETURN d", GitHubLabel.class)) {
+            descriptorCache.put(label);
+        }
+
+        for (GitHubIssue issue : query("MATCH (d:GitHub:Issue) RETURN d", GitHubIssue.class)) {
+            IssueID issueID = toIssueID(issue.getIssueId());
+            descriptorCache.put(issue, issueID);
+            knownIssues.add(issueID);
+        }
+
+        for (GitHubMilestone milestone : query("MATCH (d:GitHub:Milestone) RETURN d", GitHubMilestone.class)) {
+            String[] id = splitId(milestone.getMilestoneId());
+            descriptorCache.put(milestone, MilestoneID.builder()
+                .repoUser(id[0])
+                .repoName(id[1])
+                .milestoneNumber(Integer.parseInt(id[2]))
+                .build());
+        }
+
+        for (GitHubCommit commit : query("MATCH (d:GitHub:Commit) RETURN d", GitHubCommit.class)) {
+            String[] id = splitId(commit.getId());
+            descriptorCache.put(commit, CommitID.builder()
+                .repoUser(id[0])
+                .repoName(id[1])
+                .commitSha(id[2])
+                .build());
+        }
+
+        // Comments are identified by their repository which is only known by their issue:
+        try (Query.Result<Query.Result.CompositeRowObject> result = store.executeQuery(
+            "MATCH (i:GitHub:Issue)-[:HAS_COMMENT]->(:GitHub:Comment)-[:FOLLOWED_BY*0..]->(c:GitHub:Comment) " +
+                "RETURN i.issueId AS issueId, c")) {
+
+            for (Query.Result.CompositeRowObject row : result) {
+                String[] id = splitId(row.get("issueId", String.class));
+                GitHubComment comment = row.get("c", GitHubComment.class);
+                descriptorCache.put(comment, CommentID.builder()
+                    .repoUser(id[0])
+                    .repoName(id[1])
+                    .commentId(comment.getCommentId())
+                    .build());
+            }
+        }
+    }
+
+    private <T> List<T> query(String query, Class<T> type) {
+
+        List<T> descriptors = new ArrayList<>();
+        try (Query.Result<Query.Result.CompositeRowObject> result = store.executeQuery(query)) {
+            for (Query.Result.CompositeRowObject row : result) {
+                descriptors.add(row.get("d", type));
+            }
+        }
+        return descriptors;
+    }
+
+    /**
+     * Splits IDs like "repo-user/repo-name#issue-number" into their three parts.
+     */
+    private static String[] splitId(String id) {
+
+        int slash = id.indexOf('/');
+        int hash = id.indexOf('#', slash);
+
+        return new String[]{id.substring(0, slash), id.substring(slash + 1, hash), id.substring(hash + 1)};
+    }
+
+    static IssueID toIssueID(String issueId) {
+
+        String[] id = splitId(issueId);
+
+        return IssueID.builder()
+            .repoUser(id[0])
+            .repoName(id[1])
+            .issueNumber(Integer.parseInt(id[2]))
+            .build();
+    }
+
     /**
      * Check for {@link GitHubRepository}.
      *
@@ -56,7 +186,7 @@ public class CacheEndpoint {
         if (repository == null) {
             LOGGER.debug("Creating new repository: " + xmlGitHubRepository);
 
-            repository = store.create(GitHubRepository.class);
+            repository = create(GitHubRepository.class);
             repository.setRepositoryId(xmlGitHubRepository.getUser() + "/" + xmlGitHubRepository.getName());
             repository.setName(xmlGitHubRepository.getName());
             repository.setUser(xmlGitHubRepository.getUser());
@@ -81,7 +211,8 @@ public class CacheEndpoint {
      * @param issueNumber         The number of the issue.
      * @param xmlGitHubRepository The plugin configuration for the current repository.
      * @param restTool            The tool to retrieve data from the GitHub API.
-     * @return The retrieved or newly created descriptor instance.
+     * @return The retrieved or newly created descriptor instance, null if the issue or its repository couldn't be
+     * requested recently, see {@link UnresolvableReferenceCache}.
      * @throws IOException            If the parsing of the issue JSON failed.
      * @throws RequestFailedException If the request fails.
      */
@@ -92,28 +223,217 @@ public class CacheEndpoint {
         XMLGitHubRepository xmlGitHubRepository,
         RestTool restTool) throws IOException, RequestFailedException {
 
-        GitHubIssue gitHubIssue = descriptorCache.get(
-            IssueID.builder()
-                .repoUser(repoUser)
-                .repoName(repoName)
-                .issueNumber(issueNumber)
-                .build());
+        IssueID issueID = IssueID.builder()
+            .repoUser(repoUser)
+            .repoName(repoName)
+            .issueNumber(issueNumber)
+            .build();
+
+        GitHubIssue gitHubIssue = descriptorCache.get(issueID);
 
         if (gitHubIssue == null) {
             LOGGER.debug("Creating new issue: " + repoUser + "/" + repoName + "#" + issueNumber);
-            JSONIssue jsonIssue = restTool.requestIssueByRepositoryAndNumber(
-                repoUser,
-                repoName,
-                issueNumber);
 
-            gitHubIssue = findOrCreateGitHubIssue(jsonIssue, xmlGitHubRepository);
+            // The issue may have been prefetched already or still be in flight:
+            JSONIssue jsonIssue = requestIssue(issueID, repoUser, repoName, issueNumber, restTool);
+            if (jsonIssue == null) {
+                return null;
+            }
+
+            gitHubIssue = findOrCreateGitHubIssue(jsonIssue, repoUser, repoName);
         }
 
         return gitHubIssue;
     }
 
     /**
-     * Check for {@link GitHubIssue}.
+     * Requests a referenced issue ahead of {@link #findOrCreateGitHubIssue(String, String, int, XMLGitHubRepository,
+     * RestTool)}, unless it is known already. This can be called by any thread, e.g. by the worker threads which
+     * crawl the repositories, so the thread which writes to the store doesn't wait for the response.
+     * <p>
+     * If the request fails, the failure is reported when the reference gets resolved.
+     *
+     * @param repoUser    The owner of the repository.
+     * @param repoName    The name of the repository.
+     * @param issueNumber The number of the issue.
+     * @param restTool    The tool to retrieve data from the GitHub API.
+     */
+    public void prefetchGitHubIssue(String repoUser, String repoName, int issueNumber, RestTool restTool) {
+
+        IssueID issueID = IssueID.builder()
+            .repoUser(repoUser)
+            .repoName(repoName)
+            .issueNumber(issueNumber)
+            .build();
+
+        if (knownIssues.contains(issueID)) {
+            return;
+        }
+
+        try {
+            requestIssue(issueID, repoUser, repoName, issueNumber, restTool);
+        } catch (IOException | RequestFailedException e) {
+            LOGGER.debug("Couldn't prefetch issue " + repoUser + "/" + repoName + "#" + issueNumber + ".", e);
+        }
+    }
+
+    /**
+     * Requests a referenced issue unless it or its repository couldn't be requested recently. Issues which can't be
+     * requested because they or their repository don't exist or aren't accessible get remembered.
+     *
+     * @return The issue or null if it is known to be unresolvable.
+     */
+    private JSONIssue requestIssue(IssueID issueID,
+                                   String repoUser,
+                                   String repoName,
+                                   int issueNumber,
+                                   RestTool restTool) throws IOException, RequestFailedException {
+
+        if (unresolvableReferences.isUnresolvable(restTool.getCredentialUser(), repoUser, repoName, issueNumber)) {
+            LOGGER.debug("Skipping unresolvable issue " + repoUser + "/" + repoName + "#" + issueNumber + ".");
+            return null;
+        }
+
+        try {
+            return issueRequests.request(issueID, repoUser, repoName, issueNumber, restTool);
+        } catch (RequestFailedException e) {
+            if (e.isInaccessible()) {
+                rememberUnresolvable(repoUser, repoName, issueNumber, e.getStatus(), restTool);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Finds out if the repository of an issue which couldn't be requested is accessible at all, so all of its issues
+     * can be skipped. Every repository gets requested only once.
+     */
+    private void rememberUnresolvable(String repoUser,
+                                      String repoName,
+                                      int issueNumber,
+                                      int status,
+                                      RestTool restTool) throws IOException {
+
+        String credentialUser = restTool.getCredentialUser();
+
+        // Other credentials may be able to access the repository:
+        if (probedRepositories.add((credentialUser + ":" + repoUser + "/" + repoName).toLowerCase(Locale.ENGLISH))) {
+            try {
+                restTool.requestRepository(repoUser, repoName);
+            } catch (RequestFailedException e) {
+                if (e.isInaccessible()) {
+                    LOGGER.warn("Repository " + repoUser + "/" + repoName + " is not accessible (status " +
+                        e.getStatus() + "), references to its issues are skipped.");
+                    unresolvableReferences.putRepository(credentialUser, repoUser, repoName);
+                    return;
+                }
+            }
+        }
+
+        LOGGER.warn("Issue " + repoUser + "/" + repoName + "#" + issueNumber + " is not accessible (status " +
+            status + "), references to it are skipped.");
+        unresolvableReferences.putIssue(credentialUser, repoUser, repoName, issueNumber);
+    }
+
+    /**
+     * Commits the changes made so far and begins a new transaction, if a transaction is active.
+     * <p>
+     * The descriptors in the {@link DescriptorCache} stay valid: XO resolves them by their node in the next
+     * transaction, so they don't need to be loaded again.
+     */
+    public void commit() {
+
+        if (store.hasActiveTransaction()) {
+            store.commitTransaction();
+            store.beginTransaction();
+        }
+    }
+
+    /**
+     * @return How many descriptors were created since this endpoint was created.
+     */
+    public int getCreatedDescriptors() {
+
+        return createdDescriptors;
+    }
+
+    private <T extends Descriptor> T create(Class<T> type) {
+
+        createdDescriptors++;
+        return store.create(type);
+    }
+
+    /**
+     * @return A writer which creates new issues in batches, see {@link CypherIssueWriter}.
+     */
+    public CypherIssueWriter createCypherIssueWriter() {
+
+        return new CypherIssueWriter(this, store, descriptorCache);
+    }
+
+    /**
+     * Counts descriptors which were created by a {@link CypherIssueWriter}.
+     */
+    void countCreatedDescriptors(int descriptors) {
+
+        createdDescriptors += descriptors;
+    }
+
+    /**
+     * Puts an issue which was created by a {@link CypherIssueWriter} into the {@link DescriptorCache}.
+     */
+    void putCreatedIssue(GitHubIssue gitHubIssue, IssueID issueID) {
+
+        descriptorCache.put(gitHubIssue, issueID);
+        knownIssues.add(issueID);
+        issueRequests.remove(issueID);
+    }
+
+    /**
+     * Logs how many referenced issues were requested and how many lookups shared a request which was in flight.
+     */
+    public void logStatistics() {
+
+        LOGGER.info("Referenced issues: " + issueRequests.getSentRequests() + " requests, " +
+            issueRequests.getSharedRequests() + " lookups shared a request in flight.");
+    }
+
+    /**
+     * Looks up an issue of a repository without creating it.
+     *
+     * @param issueNumber         The number of the issue.
+     * @param xmlGitHubRepository The GitHub repository information, needed to identify the issue.
+     * @return The existing descriptor instance or null if the issue is unknown.
+     */
+    public GitHubIssue findGitHubIssue(int issueNumber, XMLGitHubRepository xmlGitHubRepository) {
+
+        return descriptorCache.get(
+            IssueID.builder()
+                .repoUser(xmlGitHubRepository.getUser())
+                .repoName(xmlGitHubRepository.getName())
+                .issueNumber(issueNumber)
+                .build());
+    }
+
+    /**
+     * Looks up a comment of a repository without creating it.
+     *
+     * @param commentId           The id of the comment.
+     * @param xmlGitHubRepository The GitHub repository information, needed to identify the comment.
+     * @return The existing descriptor instance or null if the comment is unknown.
+     */
+    public GitHubComment findGitHubComment(long commentId, XMLGitHubRepository xmlGitHubRepository) {
+
+        return descriptorCache.get(
+            CommentID.builder()
+                .repoUser(xmlGitHubRepository.getUser())
+                .repoName(xmlGitHubRepository.getName())
+                .commentId(commentId)
+                .build());
+    }
+
+    /**
+     * Check for {@link GitHubIssue}. An existing issue gets updated with the given information.
      *
      * @param jsonIssue           The GitHub issue information.
      * @param xmlGitHubRepository The GitHub repository information, needed to identify the issue.
@@ -121,37 +441,46 @@ public class CacheEndpoint {
      */
     public GitHubIssue findOrCreateGitHubIssue(JSONIssue jsonIssue, XMLGitHubRepository xmlGitHubRepository) {
 
+        return findOrCreateGitHubIssue(jsonIssue, xmlGitHubRepository.getUser(), xmlGitHubRepository.getName());
+    }
+
+    private GitHubIssue findOrCreateGitHubIssue(JSONIssue jsonIssue, String repoUser, String repoName) {
+
         IssueID issueID = IssueID.builder()
-            .repoUser(xmlGitHubRepository.getUser())
-            .repoName(xmlGitHubRepository.getName())
+            .repoUser(repoUser)
+            .repoName(repoName)
             .issueNumber(jsonIssue.getNumber())
             .build();
 
         GitHubIssue gitHubIssue = descriptorCache.get(issueID);
+        ZonedDateTime updatedAt = ZonedDateTime.parse(jsonIssue.getUpdatedAt());
 
         if (gitHubIssue == null) {
             LOGGER.debug("Creating new issue: " + jsonIssue);
 
             if (jsonIssue.getPullRequest() == null) {
-                gitHubIssue = store.create(GitHubIssue.class);
+                gitHubIssue = create(GitHubIssue.class);
             } else {
-                gitHubIssue = store.create(GitHubPullRequest.class);
+                gitHubIssue = create(GitHubPullRequest.class);
             }
 
-            // Fill descriptor with information
-            gitHubIssue.setIssueId(xmlGitHubRepository.getUser() + "/" + xmlGitHubRepository.getName() + "#" + jsonIssue.getNumber());
-            gitHubIssue.setBody(jsonIssue.getBody());
-            gitHubIssue.setComments(jsonIssue.getComments());
-            gitHubIssue.setCreatedAt(ZonedDateTime.parse(jsonIssue.getCreatedAt()));
-            gitHubIssue.setUpdatedAt(ZonedDateTime.parse(jsonIssue.getUpdatedAt()));
-            gitHubIssue.setLocked(jsonIssue.isLocked());
+            gitHubIssue.setIssueId(repoUser + "/" + repoName + "#" + jsonIssue.getNumber());
             gitHubIssue.setNumber(jsonIssue.getNumber());
-            gitHubIssue.setState(jsonIssue.getState());
-            gitHubIssue.setTitle(jsonIssue.getTitle());
 
-            descriptorCache.put(gitHubIssue, issueID);
+            putCreatedIssue(gitHubIssue, issueID);
+        } else if (isUnchanged(gitHubIssue, updatedAt)) {
+            return gitHubIssue;
         }
 
+        // Fill descriptor with information
+        gitHubIssue.setBody(jsonIssue.getBody());
+        gitHubIssue.setComments(jsonIssue.getComments());
+        gitHubIssue.setCreatedAt(ZonedDateTime.parse(jsonIssue.getCreatedAt()));
+        gitHubIssue.setUpdatedAt(updatedAt);
+        gitHubIssue.setLocked(jsonIssue.isLocked());
+        gitHubIssue.setState(jsonIssue.getState());
+        gitHubIssue.setTitle(jsonIssue.getTitle());
+
         return gitHubIssue;
     }
 
@@ -170,7 +499,7 @@ public class CacheEndpoint {
 
         if (user == null) {
             LOGGER.debug("Creating new user: " + jsonUser);
-            user = store.create(GitHubUser.class);
+            user = create(GitHubUser.class);
             user.setLogin(jsonUser.getLogin());
 
             descriptorCache.put(user);
@@ -193,7 +522,7 @@ public class CacheEndpoint {
 
         if (label == null) {
             LOGGER.debug("Creating new label: " + jsonLabel);
-            label = store.create(GitHubLabel.class);
+            label = create(GitHubLabel.class);
             label.setName(jsonLabel.getName());
             label.setDescription(jsonLabel.getDescription());
 
@@ -204,7 +533,7 @@ public class CacheEndpoint {
     }
 
     /**
-     * Check for {@link GitHubMilestone}.
+     * Check for {@link GitHubMilestone}. An existing milestone gets updated with the given information.
      *
      * @param jsonMilestone       The GitHub milestone information.
      * @param xmlGitHubRepository The GitHub repository information, needed to identify the milestone.
@@ -219,29 +548,31 @@ public class CacheEndpoint {
             .build();
 
         GitHubMilestone milestone = descriptorCache.get(milestoneID);
+        ZonedDateTime updatedAt = ZonedDateTime.parse(jsonMilestone.getUpdatedAt());
 
         if (milestone == null) {
             LOGGER.debug("Creating new milestone: " + jsonMilestone);
 
-            milestone = store.create(GitHubMilestone.class);
+            milestone = create(GitHubMilestone.class);
             milestone.setMilestoneId(xmlGitHubRepository.getUser() + "/" + xmlGitHubRepository.getName() + "#" + jsonMilestone.getNumber());
-            milestone.setTitle(jsonMilestone.getTitle());
-            milestone.setDescription(jsonMilestone.getDescription());
-            milestone.setCreatedAt(ZonedDateTime.parse(jsonMilestone.getCreatedAt()));
-            milestone.setUpdatedAt(ZonedDateTime.parse(jsonMilestone.getUpdatedAt()));
-
-            if (jsonMilestone.getDueOn() != null) {
-                milestone.setDueOn(ZonedDateTime.parse(jsonMilestone.getDueOn()));
-            }
-
-            milestone.setState(jsonMilestone.getState());
             milestone.setNumber(jsonMilestone.getNumber());
-
             milestone.setCreatedBy(findOrCreateGitHubUser(jsonMilestone.getCreator()));
 
             descriptorCache.put(milestone, milestoneID);
+        } else if (isUnchanged(milestone, updatedAt)) {
+            return milestone;
         }
 
+        milestone.setTitle(jsonMilestone.getTitle());
+        milestone.setDescription(jsonMilestone.getDescription());
+        milestone.setCreatedAt(ZonedDateTime.parse(jsonMilestone.getCreatedAt()));
+        milestone.setUpdatedAt(updatedAt);
+
+        // A due date removed on GitHub gets removed from the store as well:
+        milestone.setDueOn(jsonMilestone.getDueOn() == null ? null : ZonedDateTime.parse(jsonMilestone.getDueOn()));
+
+        milestone.setState(jsonMilestone.getState());
+
         return milestone;
     }
 
@@ -266,7 +597,7 @@ public class CacheEndpoint {
         if (commit == null) {
 
             LOGGER.debug("Creating new commit: " + commitSha);
-            commit = store.create(GitHubCommit.class);
+            commit = create(GitHubCommit.class);
             commit.setId(repoUser + "/" + repoName + "#" + commitSha);
             commit.setSha(commitSha);
 
@@ -278,7 +609,7 @@ public class CacheEndpoint {
 
 
     /**
-     * Check for {@link GitHubComment}.
+     * Check for {@link GitHubComment}. An existing comment gets updated with the given information.
      *
      * @param jsonComment         The GitHub comment information.
      * @param xmlGitHubRepository The GitHub repository information, needed to identify the milestone.
@@ -293,21 +624,32 @@ public class CacheEndpoint {
             .build();
 
         GitHubComment comment = descriptorCache.get(commentID);
+        ZonedDateTime updatedAt = ZonedDateTime.parse(jsonComment.getUpdatedAt());
 
         if (comment == null) {
             LOGGER.debug("Creating new comment: " + jsonComment);
 
-            comment = store.create(GitHubComment.class);
+            comment = create(GitHubComment.class);
             comment.setCommentId(jsonComment.getId());
-            comment.setBody(jsonComment.getBody());
             comment.setCreatedAt(ZonedDateTime.parse(jsonComment.getCreatedAt()));
-            comment.setUpdatedAt(ZonedDateTime.parse(jsonComment.getUpdatedAt()));
-
             comment.setUser(findOrCreateGitHubUser(jsonComment.getUser()));
 
             descriptorCache.put(comment, commentID);
+        } else if (isUnchanged(comment, updatedAt)) {
+            return comment;
         }
 
+        comment.setBody(jsonComment.getBody());
+        comment.setUpdatedAt(updatedAt);
+
         return comment;
     }
+
+    /**
+     * Existing descriptors only get written again if they changed since they were stored.
+     */
+    private static boolean isUnchanged(GitHubTimestamps descriptor, ZonedDateTime updatedAt) {
+
+        return descriptor.getUpdatedAt() != null && descriptor.getUpdatedAt().isEqual(updatedAt);
+    }
 }
@@ -0,0 +1,510 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox.cache;
+
+import com.buschmais.jqassistant.core.store.api.Store;
+import com.buschmais.jqassistant.core.store.api.model.Descriptor;
+import com.buschmais.xo.api.Query;
+import com.buschmais.xo.neo4j.api.model.Neo4jPropertyContainer;
+import org.jqassistant.contrib.plugin.githubissues.ids.*;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+import org.jqassistant.contrib.plugin.githubissues.json.*;
+import org.jqassistant.contrib.plugin.githubissues.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Writes new issues with a few parameterised Cypher statements per batch instead of one XO call per property and
+ * relation.
+ * </p>
+ * Issues get collected by {@link #add(JSONIssue, JSONIssue, List, GitHubRepository, XMLGitHubRepository)} and
+ * written by {@link #flush()}: one <code>UNWIND ... CREATE</code> statement per type of node and one per type of
+ * relation. The resulting nodes, labels, properties and relations are the same as the ones the {@link CacheEndpoint}
+ * creates.
+ * <p>
+ * The {@link DescriptorCache} knows which users, labels and commits exist already, they get matched by the id of
+ * their node. New nodes get created and put into the {@link DescriptorCache} afterwards, so the markdown references
+ * of the issues and everything else can be linked with XO as usual.
+ * <p>
+ * Issues which exist already, or whose comments do, can't be written this way and need to be updated with XO.
+ * <p>
+ * Like the {@link CacheEndpoint}, this may only be used by the thread which writes to the store.
+ */
+public class CypherIssueWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CypherIssueWriter.class);
+
+    private final CacheEndpoint cacheEndpoint;
+    private final Store store;
+    private final DescriptorCache descriptorCache;
+
+    private List<PendingIssue> pendingIssues = new ArrayList<>();
+    private Set<IssueID> pendingIssueIDs = new HashSet<>();
+
+    private long nodes;
+    private long relations;
+    private long statements;
+    private long writeNanos;
+
+    CypherIssueWriter(CacheEndpoint cacheEndpoint, Store store, DescriptorCache descriptorCache) {
+
+        this.cacheEndpoint = cacheEndpoint;
+        this.store = store;
+        this.descriptorCache = descriptorCache;
+    }
+
+    /**
+     * Adds a new issue to the batch.
+     *
+     * @param jsonIssue           The GitHub issue information.
+     * @param jsonPullRequest     The details of the pull request, null if the issue isn't one.
+     * @param jsonComments        The comments of the issue in the order they get linked.
+     * @param gitHubRepository    The repository which contains the issue.
+     * @param xmlGitHubRepository The GitHub repository information, needed to identify the issue.
+     * @return False if the issue or one of its comments exists already, it has to be written with XO then.
+     */
+    public boolean add(JSONIssue jsonIssue,
+                       JSONIssue jsonPullRequest,
+                       List<JSONComment> jsonComments,
+                       GitHubRepository gitHubRepository,
+                       XMLGitHubRepository xmlGitHubRepository) {
+
+        if (cacheEndpoint.findGitHubIssue(jsonIssue.getNumber(), xmlGitHubRepository) != null) {
+            return false;
+        }
+        if (pendingIssueIDs.contains(toIssueID(jsonIssue, xmlGitHubRepository))) {
+            return false;
+        }
+        for (JSONComment jsonComment : jsonComments) {
+            if (cacheEndpoint.findGitHubComment(jsonComment.getId(), xmlGitHubRepository) != null) {
+                return false;
+            }
+        }
+
+        PendingIssue pendingIssue = new PendingIssue(
+            jsonIssue, jsonPullRequest, jsonComments, gitHubRepository, xmlGitHubRepository);
+        pendingIssues.add(pendingIssue);
+        pendingIssueIDs.add(pendingIssue.issueID);
+        return true;
+    }
+
+    /**
+     * Writes the issues of the batch, their comments and everything they are related to. Afterwards they can be
+     * found in the {@link CacheEndpoint}.
+     */
+    public void flush() {
+
+        if (pendingIssues.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            writePendingIssues();
+        } finally {
+            // A failed batch isn't written again:
+            pendingIssues = new ArrayList<>();
+            pendingIssueIDs = new HashSet<>();
+            writeNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void writePendingIssues() {
+
+        // The nodes which are shared between issues get created first, once per batch:
+        Map<String, Map<String, Object>> newUsers = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> newLabels = new LinkedHashMap<>();
+        Map<CommitID, Map<String, Object>> newCommits = new LinkedHashMap<>();
+
+        for (PendingIssue pendingIssue : pendingIssues) {
+
+            JSONIssue jsonIssue = pendingIssue.jsonIssue;
+
+            addUser(jsonIssue.getUser(), newUsers);
+            for (JSONUser jsonAssignee : jsonIssue.getAssignees()) {
+                addUser(jsonAssignee, newUsers);
+            }
+            for (JSONComment jsonComment : pendingIssue.jsonComments) {
+                addUser(jsonComment.getUser(), newUsers);
+            }
+
+            for (JSONLabel jsonLabel : jsonIssue.getLabels()) {
+                if (descriptorCache.get(toLabelID(jsonLabel)) == null && !newLabels.containsKey(jsonLabel.getName())) {
+                    Map<String, Object> properties = new HashMap<>();
+                    properties.put("name", jsonLabel.getName());
+                    properties.put("description", jsonLabel.getDescription());
+                    newLabels.put(jsonLabel.getName(), properties);
+                }
+            }
+
+            CommitID commitID = pendingIssue.getMergeCommitID();
+            if (commitID != null && descriptorCache.get(commitID) == null && !newCommits.containsKey(commitID)) {
+                Map<String, Object> properties = new HashMap<>();
+                String sha = pendingIssue.jsonPullRequest.getMergeCommitSha();
+                properties.put("id", pendingIssue.getRepositoryId() + "#" + sha);
+                properties.put("sha", sha);
+                newCommits.put(commitID, properties);
+            }
+        }
+
+        for (GitHubUser user : create("GitHub:User", newUsers.values(), GitHubUser.class)) {
+            descriptorCache.put(user);
+        }
+        for (GitHubLabel label : create("GitHub:Label", newLabels.values(), GitHubLabel.class)) {
+            descriptorCache.put(label);
+        }
+        for (GitHubCommit commit : create("GitHub:Commit", newCommits.values(), GitHubCommit.class)) {
+            descriptorCache.put(commit, toCommitID(commit.getId()));
+        }
+
+        writeIssues();
+        writeComments();
+    }
+
+    private void addUser(JSONUser jsonUser, Map<String, Map<String, Object>> newUsers) {
+
+        if (descriptorCache.get(toUserID(jsonUser)) == null && !newUsers.containsKey(jsonUser.getLogin())) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("login", jsonUser.getLogin());
+            newUsers.put(jsonUser.getLogin(), properties);
+        }
+    }
+
+    /**
+     * Creates the issues and pull requests and relates them to their repository, users, milestone, labels and merge
+     * commit.
+     */
+    private void writeIssues() {
+
+        List<Map<String, Object>> issues = new ArrayList<>();
+        List<Map<String, Object>> pullRequests = new ArrayList<>();
+
+        for (PendingIssue pendingIssue : pendingIssues) {
+
+            JSONIssue jsonIssue = pendingIssue.jsonIssue;
+
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("issueId", pendingIssue.getRepositoryId() + "#" + jsonIssue.getNumber());
+            properties.put("number", jsonIssue.getNumber());
+            properties.put("body", jsonIssue.getBody());
+            properties.put("comments", jsonIssue.getComments());
+            properties.put("createdAt", ZonedDateTime.parse(jsonIssue.getCreatedAt()));
+            properties.put("updatedAt", ZonedDateTime.parse(jsonIssue.getUpdatedAt()));
+            properties.put("locked", jsonIssue.isLocked());
+            properties.put("state", jsonIssue.getState());
+            properties.put("title", jsonIssue.getTitle());
+
+            if (jsonIssue.getPullRequest() == null) {
+                issues.add(properties);
+            } else {
+                if (pendingIssue.jsonPullRequest != null && pendingIssue.jsonPullRequest.getMergedAt() != null) {
+                    properties.put("mergedAt", ZonedDateTime.parse(pendingIssue.jsonPullRequest.getMergedAt()));
+                }
+                pullRequests.add(properties);
+            }
+        }
+
+        List<GitHubIssue> created = new ArrayList<>(create("GitHub:Issue", issues, GitHubIssue.class));
+        created.addAll(create("GitHub:Issue:PullRequest", pullRequests, GitHubIssue.class));
+
+        for (GitHubIssue issue : created) {
+            cacheEndpoint.putCreatedIssue(issue, CacheEndpoint.toIssueID(issue.getIssueId()));
+        }
+
+        Relations relations = new Relations();
+
+        for (PendingIssue pendingIssue : pendingIssues) {
+
+            JSONIssue jsonIssue = pendingIssue.jsonIssue;
+            GitHubIssue issue = descriptorCache.get(pendingIssue.issueID);
+
+            relations.add(pendingIssue.gitHubRepository, "HAS_ISSUE", issue);
+            relations.add(issue, "CREATED_BY", descriptorCache.get(toUserID(jsonIssue.getUser())));
+
+            if (jsonIssue.getMilestone() != null) {
+                relations.add(issue, "IS_PART_OF", cacheEndpoint.findOrCreateGitHubMilestone(
+                    jsonIssue.getMilestone(), pendingIssue.xmlGitHubRepository));
+            }
+
+            CommitID commitID = pendingIssue.getMergeCommitID();
+            if (commitID != null && jsonIssue.getPullRequest() != null) {
+                relations.add(issue, "HAS_LAST_COMMIT", descriptorCache.get(commitID));
+            }
+
+            for (JSONUser jsonAssignee : jsonIssue.getAssignees()) {
+                relations.add(issue, "HAS_ASSIGNEE", descriptorCache.get(toUserID(jsonAssignee)));
+            }
+
+            for (JSONLabel jsonLabel : jsonIssue.getLabels()) {
+                relations.add(issue, "HAS_LABEL", descriptorCache.get(toLabelID(jsonLabel)));
+            }
+        }
+
+        relations.write();
+    }
+
+    /**
+     * Creates the comments and links them to their author and to each other, each one pointing at the next one.
+     */
+    private void writeComments() {
+
+        List<Map<String, Object>> comments = new ArrayList<>();
+        Map<Long, PendingIssue> issueByComment = new HashMap<>();
+
+        for (PendingIssue pendingIssue : pendingIssues) {
+            for (JSONComment jsonComment : pendingIssue.jsonComments) {
+
+                Map<String, Object> properties = new HashMap<>();
+                properties.put("commentId", jsonComment.getId());
+                properties.put("createdAt", ZonedDateTime.parse(jsonComment.getCreatedAt()));
+                properties.put("updatedAt", ZonedDateTime.parse(jsonComment.getUpdatedAt()));
+                properties.put("body", jsonComment.getBody());
+                comments.add(properties);
+
+                issueByComment.put(jsonComment.getId(), pendingIssue);
+            }
+        }
+
+        for (GitHubComment comment : create("GitHub:Comment", comments, GitHubComment.class)) {
+            XMLGitHubRepository xmlGitHubRepository = issueByComment.get(comment.getCommentId()).xmlGitHubRepository;
+            descriptorCache.put(comment, toCommentID(comment.getCommentId(), xmlGitHubRepository));
+        }
+
+        Relations relations = new Relations();
+
+        for (PendingIssue pendingIssue : pendingIssues) {
+
+            Descriptor last = descriptorCache.get(pendingIssue.issueID);
+            String type = "HAS_COMMENT";
+
+            for (JSONComment jsonComment : pendingIssue.jsonComments) {
+
+                GitHubComment comment = descriptorCache.get(
+                    toCommentID(jsonComment.getId(), pendingIssue.xmlGitHubRepository));
+
+                relations.add(comment, "CREATED_BY", descriptorCache.get(toUserID(jsonComment.getUser())));
+                relations.add(last, type, comment);
+
+                last = comment;
+                type = "FOLLOWED_BY";
+            }
+        }
+
+        relations.write();
+    }
+
+    /**
+     * Creates one node per row.
+     *
+     * @param labels The labels of the nodes, separated by colons.
+     * @param rows   The properties of the nodes, properties with a null value are left out.
+     * @param type   The descriptor type of the nodes.
+     * @return The descriptors of the created nodes.
+     */
+    private <T extends Descriptor> List<T> create(String labels, Iterable<Map<String, Object>> rows, Class<T> type) {
+
+        List<Map<String, Object>> rowList = new ArrayList<>();
+        rows.forEach(rowList::add);
+
+        List<T> descriptors = new ArrayList<>();
+        if (rowList.isEmpty()) {
+            return descriptors;
+        }
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("rows", rowList);
+
+        try (Query.Result<Query.Result.CompositeRowObject> result = store.executeQuery(
+            "UNWIND $rows AS row CREATE (n:" + labels + ") SET n = row RETURN n", parameters)) {
+
+            for (Query.Result.CompositeRowObject row : result) {
+                descriptors.add(row.get("n", type));
+            }
+        }
+
+        statements++;
+        nodes += descriptors.size();
+        cacheEndpoint.countCreatedDescriptors(descriptors.size());
+
+        return descriptors;
+    }
+
+    /**
+     * Logs how many nodes and relations were written and how fast.
+     */
+    public void logStatistics() {
+
+        double seconds = writeNanos / 1e9;
+
+        LOGGER.info("Cypher writer: " + nodes + " nodes and " + relations + " relations in " + statements +
+            " statements, " + TimeUnit.NANOSECONDS.toMillis(writeNanos) + " ms, " +
+            String.format("%.1f", seconds > 0 ? nodes / seconds : 0) + " nodes/s.");
+    }
+
+    private static IssueID toIssueID(JSONIssue jsonIssue, XMLGitHubRepository xmlGitHubRepository) {
+
+        return IssueID.builder()
+            .repoUser(xmlGitHubRepository.getUser())
+            .repoName(xmlGitHubRepository.getName())
+            .issueNumber(jsonIssue.getNumber())
+            .build();
+    }
+
+    private static CommentID toCommentID(long commentId, XMLGitHubRepository xmlGitHubRepository) {
+
+        return CommentID.builder()
+            .repoUser(xmlGitHubRepository.getUser())
+            .repoName(xmlGitHubRepository.getName())
+            .commentId(commentId)
+            .build();
+    }
+
+    private static UserID toUserID(JSONUser jsonUser) {
+
+        return UserID.builder()
+            .login(jsonUser.getLogin())
+            .build();
+    }
+
+    private static LabelID toLabelID(JSONLabel jsonLabel) {
+
+        return LabelID.builder()
+            .name(jsonLabel.getName())
+            .build();
+    }
+
+    private static CommitID toCommitID(String id) {
+
+        int slash = id.indexOf('/');
+        int hash = id.indexOf('#', slash);
+
+        return CommitID.builder()
+            .repoUser(id.substring(0, slash))
+            .repoName(id.substring(slash + 1, hash))
+            .commitSha(id.substring(hash + 1))
+            .build();
+    }
+
+    /**
+     * The id of the node of a descriptor. {@link Descriptor#getId()} can't be used as it is shadowed by the property
+     * of {@link GitHubCommit#getId()}.
+     */
+    private static long nodeId(Descriptor descriptor) {
+
+        return ((Neo4jPropertyContainer) descriptor.getDelegate()).getId();
+    }
+
+    /**
+     * The relations of a batch, grouped by their type.
+     * <p>
+     * The planner of Neo4j doesn't look up nodes by an id which is taken from an unwound row, it scans all nodes for
+     * every row instead. That's why the nodes of a statement get looked up once by the list of their ids, sorted by
+     * id, and the rows address them by their position in this list.
+     */
+    private class Relations {
+
+        private final Map<String, List<long[]>> relationsByType = new LinkedHashMap<>();
+
+        void add(Descriptor from, String type, Descriptor to) {
+
+            relationsByType.computeIfAbsent(type, t -> new ArrayList<>()).add(new long[]{nodeId(from), nodeId(to)});
+        }
+
+        void write() {
+
+            for (Map.Entry<String, List<long[]>> entry : relationsByType.entrySet()) {
+
+                TreeSet<Long> nodeIds = new TreeSet<>();
+                for (long[] relation : entry.getValue()) {
+                    nodeIds.add(relation[0]);
+                    nodeIds.add(relation[1]);
+                }
+
+                List<Long> sortedNodeIds = new ArrayList<>(nodeIds);
+                List<Map<String, Object>> rows = new ArrayList<>();
+                for (long[] relation : entry.getValue()) {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("from", Collections.binarySearch(sortedNodeIds, relation[0]));
+                    row.put("to", Collections.binarySearch(sortedNodeIds, relation[1]));
+                    rows.add(row);
+                }
+
+                Map<String, Object> parameters = new HashMap<>();
+                parameters.put("ids", sortedNodeIds);
+                parameters.put("rows", rows);
+
+                store.executeQuery(
+                    "MATCH (n) WHERE id(n) IN $ids " +
+                        "WITH n ORDER BY id(n) " +
+                        "WITH collect(n) AS nodes " +
+                        "UNWIND $rows AS row " +
+                        "WITH nodes[row.from] AS from, nodes[row.to] AS to " +
+                        "CREATE (from)-[:" + entry.getKey() + "]->(to)", parameters).close();
+
+                statements++;
+                relations += entry.getValue().size();
+            }
+        }
+    }
+
+    /**
+     * An issue which waits for the batch to be written.
+     */
+    private static class PendingIssue {
+
+        private final JSONIssue jsonIssue;
+        private final JSONIssue jsonPullRequest;
+        private final List<JSONComment> jsonComments;
+        private final GitHubRepository gitHubRepository;
+        private final XMLGitHubRepository xmlGitHubRepository;
+        private final IssueID issueID;
+
+        PendingIssue(JSONIssue jsonIssue,
+                     JSONIssue jsonPullRequest,
+                     List<JSONComment> jsonComments,
+                     GitHubRepository gitHubRepository,
+                     XMLGitHubRepository xmlGitHubRepository) {
+
+            this.jsonIssue = jsonIssue;
+            this.jsonPullRequest = jsonPullRequest;
+            this.jsonComments = jsonComments;
+            this.gitHubRepository = gitHubRepository;
+            this.xmlGitHubRepository = xmlGitHubRepository;
+            this.issueID = toIssueID(jsonIssue, xmlGitHubRepository);
+        }
+
+        /**
+         * @return The id of the repository, like "repo-user/repo-name".
+         */
+        String getRepositoryId() {
+
+            return xmlGitHubRepository.getUser() + "/" + xmlGitHubRepository.getName();
+        }
+
+        /**
+         * @return The merge commit of the pull request, null if there is none.
+         */
+        CommitID getMergeCommitID() {
+
+            if (jsonPullRequest == null || jsonPullRequest.getMergeCommitSha() == null) {
+                return null;
+            }
+            return CommitID.builder()
+                .repoUser(xmlGitHubRepository.getUser())
+                .repoName(xmlGitHubRepository.getName())
+                .commitSha(jsonPullRequest.getMergeCommitSha())
+                .build();
+        }
+    }
+}
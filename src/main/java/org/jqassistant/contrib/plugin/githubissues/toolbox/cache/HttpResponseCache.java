@@ -0,0 +1,276 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * This class stores responses of the GitHub API on disk, so they can be validated with conditional requests during
+ * the next scan. GitHub doesn't count "304 Not Modified" responses against the rate limit.
+ * </p>
+ * Every response is stored in its own file named by a hash of the URL and the credentials. The total size of the
+ * cache is capped, the least recently used responses get removed first.
+ * <p>
+ * This class is thread-safe. Only the index of the entries is guarded by a lock, the files are read and written
+ * outside of it, so the requesting threads don't wait for each other's disk I/O. An entry is always replaced as a
+ * whole, so concurrent writes of the same entry are safe.
+ *
+ * @see <a href="https://developer.github.com/v3/#conditional-requests">Conditional requests</a>
+ */
+public class HttpResponseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpResponseCache.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final File directory;
+    private final long maxBytes;
+
+    // File name -> file size, ordered from the least to the most recently used file.
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Opens a cache directory. Existing entries of previous scans are reused.
+     *
+     * @param directory The cache directory. It gets created if it doesn't exist.
+     * @param maxBytes  The maximum size of all cached responses.
+     * @throws IOException If the directory can't be created.
+     */
+    public HttpResponseCache(File directory, long maxBytes) throws IOException {
+
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        Files.createDirectories(directory.toPath());
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".entry"));
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                index.put(file.getName(), file.length());
+                totalBytes += file.length();
+            }
+        }
+
+        for (String evicted : evict()) {
+            delete(evicted);
+        }
+    }
+
+    /**
+     * Looks up the cached response for a request.
+     *
+     * @param url      The requested URL.
+     * @param user     The user of the credentials used for the request.
+     * @param password The password of the credentials used for the request.
+     * @return The cached response or null if there is none.
+     */
+    public Entry get(String url, String user, String password) {
+
+        String fileName = fileName(url, user, password);
+
+        if (!isIndexed(fileName)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        File file = new File(directory, fileName);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+            if (in.readInt() != FORMAT_VERSION) {
+                remove(fileName);
+                misses.incrementAndGet();
+                return null;
+            }
+
+            Entry entry = new Entry(readString(in), readString(in), readString(in), readString(in));
+
+            // The modification time tells which entries were used recently when the cache gets opened again:
+            if (!file.setLastModified(System.currentTimeMillis())) {
+                LOGGER.debug("Couldn't touch cache file " + file);
+            }
+
+            hits.incrementAndGet();
+            return entry;
+        } catch (FileNotFoundException e) {
+            // Evicted by another thread since it was looked up:
+            unindex(fileName);
+            misses.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't read cached response for " + url + ", ignoring it.", e);
+            remove(fileName);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores a response. Responses without an "ETag" and a "Last-Modified" header can't be validated and are not
+     * stored.
+     *
+     * @param url      The requested URL.
+     * @param user     The user of the credentials used for the request.
+     * @param password The password of the credentials used for the request.
+     * @param entry    The response.
+     */
+    public void put(String url, String user, String password, Entry entry) {
+
+        if (entry.getETag() == null && entry.getLastModified() == null) {
+            return;
+        }
+
+        String fileName = fileName(url, user, password);
+        File file = new File(directory, fileName);
+
+        try {
+            AtomicFiles.writeAtomically(file, "response", out -> {
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, entry.getETag());
+                writeString(out, entry.getLastModified());
+                writeString(out, entry.getLink());
+                writeString(out, entry.getBody());
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't cache response for " + url + ".", e);
+            return;
+        }
+
+        for (String evicted : index(fileName, file.length())) {
+            delete(evicted);
+        }
+    }
+
+    /**
+     * Logs how many requests could be answered from the cache.
+     */
+    public synchronized void logStatistics() {
+
+        LOGGER.info("HTTP response cache: " + hits + " hits, " + misses + " misses, " +
+            index.size() + " entries with " + totalBytes / 1024 + " KiB.");
+    }
+
+    private synchronized boolean isIndexed(String fileName) {
+
+        // Also marks the entry as used:
+        return index.get(fileName) != null;
+    }
+
+    /**
+     * @return The files to delete to make room for the entry.
+     */
+    private synchronized List<String> index(String fileName, long size) {
+
+        Long previous = index.put(fileName, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+
+        return evict();
+    }
+
+    private synchronized void unindex(String fileName) {
+
+        Long size = index.remove(fileName);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    private synchronized List<String> evict() {
+
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+        }
+        return evicted;
+    }
+
+    private void remove(String fileName) {
+
+        unindex(fileName);
+        delete(fileName);
+    }
+
+    private void delete(String fileName) {
+
+        try {
+            Files.deleteIfExists(new File(directory, fileName).toPath());
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't delete cache file " + fileName + ".", e);
+        }
+    }
+
+    private static String fileName(String url, String user, String password) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((url + "\n" + user + "\n" + password).getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder fileName = new StringBuilder();
+            for (byte b : hash) {
+                fileName.append(String.format("%02x", b));
+            }
+            return fileName.append(".entry").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A cached response together with the headers needed to validate it and to follow its pagination.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static class Entry {
+
+        private String eTag;
+        private String lastModified;
+        private String link;
+        private String body;
+    }
+}
@@ -0,0 +1,95 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox.cache;
+
+import org.jqassistant.contrib.plugin.githubissues.ids.IssueID;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONIssue;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.Futures;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.RequestFailedException;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.RestTool;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * The requests for single issues which were started but whose issue wasn't imported yet.
+ * </p>
+ * Every issue is requested at most once: the first thread which asks for an issue sends the request, all threads
+ * which ask for the same issue in the meantime wait for that response. A response is kept until the issue gets
+ * imported, see {@link #remove(IssueID)}. A failure is not kept, as it may depend on the credentials of the request,
+ * the next lookup requests the issue again.
+ * <p>
+ * This class is thread-safe.
+ */
+class InFlightIssueRequests {
+
+    private final ConcurrentMap<IssueID, CompletableFuture<JSONIssue>> requests = new ConcurrentHashMap<>();
+
+    private final AtomicInteger sentRequests = new AtomicInteger();
+    private final AtomicInteger sharedRequests = new AtomicInteger();
+
+    /**
+     * Requests an issue or waits for the request which is already in flight.
+     *
+     * @param issueID     The ID of the issue.
+     * @param repoUser    The owner of the repository.
+     * @param repoName    The name of the repository.
+     * @param issueNumber The number of the issue.
+     * @param restTool    The tool which sends the request if there is none in flight.
+     * @return The issue as JSON-POJO.
+     * @throws IOException            If parsing the response fails.
+     * @throws RequestFailedException If the request fails.
+     */
+    JSONIssue request(IssueID issueID,
+                      String repoUser,
+                      String repoName,
+                      int issueNumber,
+                      RestTool restTool) throws IOException, RequestFailedException {
+
+        CompletableFuture<JSONIssue> request = new CompletableFuture<>();
+        CompletableFuture<JSONIssue> inFlight = requests.putIfAbsent(issueID, request);
+
+        if (inFlight != null) {
+            sharedRequests.incrementAndGet();
+            return Futures.await(inFlight);
+        }
+
+        sentRequests.incrementAndGet();
+        try {
+            request.complete(restTool.requestIssueByRepositoryAndNumber(repoUser, repoName, issueNumber));
+        } catch (Exception | Error e) {
+            // Every failure completes the request, the threads waiting for it would wait forever otherwise:
+            requests.remove(issueID, request);
+            request.completeExceptionally(e);
+        }
+        return Futures.await(request);
+    }
+
+    /**
+     * Forgets the request of an issue once it was imported.
+     *
+     * @param issueID The ID of the issue.
+     */
+    void remove(IssueID issueID) {
+
+        requests.remove(issueID);
+    }
+
+    /**
+     * @return The number of requests which were sent.
+     */
+    int getSentRequests() {
+
+        return sentRequests.get();
+    }
+
+    /**
+     * @return The number of times a request was in flight already and its response got shared.
+     */
+    int getSharedRequests() {
+
+        return sharedRequests.get();
+    }
+}
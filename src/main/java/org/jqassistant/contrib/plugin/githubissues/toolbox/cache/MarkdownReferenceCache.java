@@ -0,0 +1,197 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox.cache;
+
+import org.jqassistant.contrib.plugin.githubissues.toolbox.MarkdownReferences;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * This class remembers the references found in markdown texts, so identical texts like issue templates or bot
+ * comments only get parsed once. The texts are identified by a hash of their content and their repository.
+ * </p>
+ * If a file is given, the cache gets loaded from it and saved to it again by {@link #save()}, so the next scan can
+ * reuse the references as well. The least recently used entries are dropped if there are too many of them.
+ */
+public class MarkdownReferenceCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MarkdownReferenceCache.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int MAX_ENTRIES = 500_000;
+
+    private final File file;
+
+    // Hash -> references, ordered from the least to the most recently used entry.
+    private final LinkedHashMap<String, MarkdownReferences> entries =
+        new LinkedHashMap<String, MarkdownReferences>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MarkdownReferences> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache which is kept in memory only.
+     */
+    public MarkdownReferenceCache() {
+
+        this.file = null;
+    }
+
+    /**
+     * Opens a cache file. Entries of previous scans are reused.
+     *
+     * @param file The cache file. It gets created by {@link #save()} if it doesn't exist.
+     */
+    public MarkdownReferenceCache(File file) {
+
+        this.file = file;
+
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+            if (in.readInt() != FORMAT_VERSION) {
+                LOGGER.info("Ignoring markdown reference cache " + file + " of an older version.");
+                return;
+            }
+
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                entries.put(in.readUTF(), readReferences(in));
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't read markdown reference cache " + file + ", ignoring it.", e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * @param markdown The markdown text.
+     * @param context  Everything besides the text which influences the references, e.g. the repository.
+     * @return The references found in the text before or null if it wasn't parsed yet.
+     */
+    public synchronized MarkdownReferences get(String markdown, String context) {
+
+        MarkdownReferences references = entries.get(hash(markdown, context));
+
+        if (references == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return references;
+    }
+
+    /**
+     * @param markdown   The markdown text.
+     * @param context    Everything besides the text which influences the references, e.g. the repository.
+     * @param references The references found in the text.
+     */
+    public synchronized void put(String markdown, String context, MarkdownReferences references) {
+
+        entries.put(hash(markdown, context), references);
+    }
+
+    /**
+     * Writes the cache to its file, if it has one.
+     */
+    public synchronized void save() {
+
+        if (file == null) {
+            return;
+        }
+
+        try {
+            AtomicFiles.writeAtomically(file, "markdown-references", out -> {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, MarkdownReferences> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    writeReferences(out, entry.getValue());
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't save markdown reference cache " + file + ".", e);
+        }
+    }
+
+    /**
+     * Logs how many markdown texts didn't need to be parsed.
+     */
+    public synchronized void logStatistics() {
+
+        LOGGER.info("Markdown reference cache: " + hits + " hits, " + misses + " misses, " +
+            entries.size() + " entries.");
+    }
+
+    private static void writeReferences(DataOutputStream out, MarkdownReferences references) throws IOException {
+
+        out.writeInt(references.getIssues().size());
+        for (MarkdownReferences.IssueReference issue : references.getIssues()) {
+            out.writeUTF(issue.getRepoUser());
+            out.writeUTF(issue.getRepoName());
+            out.writeInt(issue.getIssueNumber());
+        }
+
+        out.writeInt(references.getCommits().size());
+        for (MarkdownReferences.CommitReference commit : references.getCommits()) {
+            out.writeUTF(commit.getRepoUser());
+            out.writeUTF(commit.getRepoName());
+            out.writeUTF(commit.getCommitSha());
+        }
+
+        out.writeInt(references.getUsers().size());
+        for (String user : references.getUsers()) {
+            out.writeUTF(user);
+        }
+    }
+
+    private static MarkdownReferences readReferences(DataInputStream in) throws IOException {
+
+        MarkdownReferences references = new MarkdownReferences();
+
+        for (int i = in.readInt(); i > 0; i--) {
+            references.addIssue(in.readUTF(), in.readUTF(), in.readInt());
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            references.addCommit(in.readUTF(), in.readUTF(), in.readUTF());
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            references.addUser(in.readUTF());
+        }
+
+        return references;
+    }
+
+    private static String hash(String markdown, String context) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(context.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(markdown.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", e);
+        }
+    }
+}
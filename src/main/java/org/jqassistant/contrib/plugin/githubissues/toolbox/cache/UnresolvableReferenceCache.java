@@ -0,0 +1,189 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>
+ * This class remembers referenced issues which couldn't be requested because they or their repository don't exist
+ * or aren't accessible, so further references to them don't cost a request.
+ * </p>
+ * Entries are kept per user of the credentials the request was sent with, as other credentials may be able to
+ * access a private repository.
+ * <p>
+ * Every entry expires after a time to live, an issue or repository may become accessible again. If a file is given,
+ * the cache gets loaded from it and saved to it again by {@link #save()}, so the next scan skips these references as
+ * well.
+ * <p>
+ * This class is thread-safe.
+ */
+public class UnresolvableReferenceCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnresolvableReferenceCache.class);
+
+    private static final int FORMAT_VERSION = 2;
+
+    private final File file;
+    private final long timeToLive;
+
+    // "user:owner/repo" or "user:owner/repo#number" -> expiry time in milliseconds.
+    private final Map<String, Long> entries = new HashMap<>();
+
+    private long hits;
+
+    /**
+     * Creates a cache which is kept in memory only.
+     *
+     * @param timeToLive How long an entry is kept, in milliseconds. Nothing is kept if it is 0.
+     */
+    public UnresolvableReferenceCache(long timeToLive) {
+
+        this.file = null;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Opens a cache file. Entries of previous scans which didn't expire yet are reused.
+     *
+     * @param file       The cache file. It gets created by {@link #save()} if it doesn't exist.
+     * @param timeToLive How long an entry is kept, in milliseconds. Nothing is kept if it is 0.
+     */
+    public UnresolvableReferenceCache(File file, long timeToLive) {
+
+        this.file = file;
+        this.timeToLive = timeToLive;
+
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+            if (in.readInt() != FORMAT_VERSION) {
+                LOGGER.info("Ignoring unresolvable reference cache " + file + " of an older version.");
+                return;
+            }
+
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                entries.put(in.readUTF(), in.readLong());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't read unresolvable reference cache " + file + ", ignoring it.", e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * @param credentialUser The user of the credentials the issue would be requested with.
+     * @param repoUser       The owner of the repository.
+     * @param repoName       The name of the repository.
+     * @param issueNumber    The number of the issue.
+     * @return True, if the issue or its repository couldn't be requested recently with these credentials.
+     */
+    public synchronized boolean isUnresolvable(String credentialUser, String repoUser, String repoName,
+                                               int issueNumber) {
+
+        long now = System.currentTimeMillis();
+        if (isValid(repositoryKey(credentialUser, repoUser, repoName), now) ||
+            isValid(issueKey(credentialUser, repoUser, repoName, issueNumber), now)) {
+            hits++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remembers an issue which couldn't be requested.
+     *
+     * @param credentialUser The user of the credentials the issue was requested with.
+     * @param repoUser       The owner of the repository.
+     * @param repoName       The name of the repository.
+     * @param issueNumber    The number of the issue.
+     */
+    public synchronized void putIssue(String credentialUser, String repoUser, String repoName, int issueNumber) {
+
+        put(issueKey(credentialUser, repoUser, repoName, issueNumber));
+    }
+
+    /**
+     * Remembers a repository whose issues can't be requested.
+     *
+     * @param credentialUser The user of the credentials the repository was requested with.
+     * @param repoUser       The owner of the repository.
+     * @param repoName       The name of the repository.
+     */
+    public synchronized void putRepository(String credentialUser, String repoUser, String repoName) {
+
+        put(repositoryKey(credentialUser, repoUser, repoName));
+    }
+
+    /**
+     * Writes the entries which didn't expire yet to the file of the cache, if it has one.
+     */
+    public synchronized void save() {
+
+        if (file == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue() <= now) {
+                iterator.remove();
+            }
+        }
+
+        try {
+            AtomicFiles.writeAtomically(file, "unresolvable-references", out -> {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't save unresolvable reference cache " + file + ".", e);
+        }
+    }
+
+    /**
+     * Logs how many references were skipped.
+     */
+    public synchronized void logStatistics() {
+
+        LOGGER.info("Unresolvable reference cache: " + hits + " references skipped, " + entries.size() + " entries.");
+    }
+
+    private void put(String key) {
+
+        if (timeToLive > 0) {
+            entries.put(key, System.currentTimeMillis() + timeToLive);
+        }
+    }
+
+    private boolean isValid(String key, long now) {
+
+        Long expiry = entries.get(key);
+        return expiry != null && expiry > now;
+    }
+
+    // Logins, owners and names of repositories are case-insensitive:
+    private static String repositoryKey(String credentialUser, String repoUser, String repoName) {
+
+        return (credentialUser + ":" + repoUser + "/" + repoName).toLowerCase(Locale.ENGLISH);
+    }
+
+    private static String issueKey(String credentialUser, String repoUser, String repoName, int issueNumber) {
+
+        return repositoryKey(credentialUser, repoUser, repoName) + "#" + issueNumber;
+    }
+}
@@ -0,0 +1,68 @@
+package org.jqassistant.contrib.plugin.githubissues.scanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PipelineStatisticsTest {
+
+    @Test
+    public void onlyFinishedItemsAreCounted() {
+
+        PipelineStatistics statistics = new PipelineStatistics(64, 1);
+
+        long start = System.nanoTime();
+        statistics.recordBusy(PipelineStatistics.Stage.FETCH, start);
+        statistics.record(PipelineStatistics.Stage.FETCH, start);
+        statistics.record(PipelineStatistics.Stage.EXTRACT, start);
+        statistics.record(PipelineStatistics.Stage.EXTRACT, start);
+
+        assertEquals(1, statistics.getItems(PipelineStatistics.Stage.FETCH));
+        assertEquals(2, statistics.getItems(PipelineStatistics.Stage.EXTRACT));
+        assertEquals(0, statistics.getItems(PipelineStatistics.Stage.WRITE));
+    }
+
+    @Test
+    public void queueDepthIsSampledOnPutAndTake() {
+
+        PipelineStatistics statistics = new PipelineStatistics(64, 1);
+
+        long start = System.nanoTime();
+        statistics.recordPut(start, 1);
+        statistics.recordPut(start, 2);
+        statistics.recordPut(start, 6);
+        statistics.recordTake(start, 5);
+
+        assertEquals(3.5, statistics.getAverageQueueDepth(), 0.001);
+        assertEquals(6, statistics.getMaxQueueDepth());
+    }
+
+    @Test
+    public void waitsOfTheCrawlersAreAveragedOverTheirThreads() {
+
+        // Four crawlers waited 3 s each while the store writer waited 5 s:
+        PipelineStatistics statistics = new PipelineStatistics(64, 4);
+        for (int i = 0; i < 4; i++) {
+            statistics.recordPut(secondsAgo(3), 64);
+        }
+        statistics.recordTake(secondsAgo(5), 0);
+
+        assertFalse(statistics.isLimitedByStoreWriter());
+
+        // A single crawler which waited as long is held up by the store writer:
+        PipelineStatistics singleCrawler = new PipelineStatistics(64, 1);
+        singleCrawler.recordPut(secondsAgo(12), 64);
+        singleCrawler.recordTake(secondsAgo(5), 0);
+
+        assertTrue(singleCrawler.isLimitedByStoreWriter());
+    }
+
+    private static long secondsAgo(long seconds) {
+
+        return System.nanoTime() - TimeUnit.SECONDS.toNanos(seconds);
+    }
+}
@@ -5,6 +5,7 @@ import com.buschmais.jqassistant.core.store.api.model.Descriptor;
 import com.buschmais.jqassistant.plugin.common.test.AbstractPluginIT;
 import com.github.tomakehurst.wiremock.WireMockServer;
 import org.jqassistant.contrib.plugin.githubissues.model.GitHubIssuesConfigurationFile;
+import org.jqassistant.contrib.plugin.githubissues.model.GitHubRepository;
 import org.jqassistant.contrib.plugin.githubissues.scanner.stubbing.StubbingTool;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,8 +13,18 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -62,6 +73,294 @@ public class ScannerTestIT extends AbstractPluginIT {
         assertEquals(1, testResult.getColumn("i.title").size());
         assertEquals("Found a bug", testResult.getColumn("i.title").get(0));
 
+        testResult = query(
+                "MATCH\n" +
+                "    (:Issue)-[:HAS_COMMENT]->(c:Comment)\n" +
+                "RETURN\n" +
+                "    c.body");
+
+        assertEquals(1, testResult.getColumn("c.body").size());
+        assertEquals("Me too", testResult.getColumn("c.body").get(0));
+
+        // "Me too" can't contain a reference, only the issue body gets rendered:
+        wireMockServer.verify(1, postRequestedFor(urlEqualTo("/markdown")));
+
+        // The merge data comes with the list of pull requests:
+        assertEquals(1, query("MATCH (p:PullRequest {number:1347}) WHERE exists(p.mergedAt) RETURN p")
+            .getColumn("p").size());
+        wireMockServer.verify(0, getRequestedFor(urlEqualTo("/repos/octocat/Hello-World/pulls/1347")));
+
+        // The referenced issue is requested once, ahead of the import of the referencing issue:
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/repos/octocat/Hello-World/issues/1347")));
+
+        store.commitTransaction();
+    }
+
+    @Test
+    public void scanGitHubIssuesWithRepositoryComments() throws IOException {
+
+        StubbingTool.stubGitHubAPI();
+
+        store.beginTransaction();
+
+        Descriptor descriptor = scan("repository-comments/githubissues.xml");
+
+        assertThat(descriptor).isInstanceOf(GitHubIssuesConfigurationFile.class);
+
+        TestResult testResult = query(
+                "MATCH\n" +
+                "    (:Issue {number:1347})-[:HAS_COMMENT]->(c:Comment)\n" +
+                "RETURN\n" +
+                "    c.body");
+
+        assertEquals(1, testResult.getColumn("c.body").size());
+        assertEquals("Me too", testResult.getColumn("c.body").get(0));
+
+        wireMockServer.verify(0, getRequestedFor(urlEqualTo(
+            "/repos/github-user/github-repository/issues/1347/comments?per_page=100")));
+
+        // The markdown of this repository is parsed locally:
+        wireMockServer.verify(0, postRequestedFor(urlEqualTo("/markdown")));
+
+        store.commitTransaction();
+    }
+
+    @Test
+    public void scanGitHubIssuesIncrementally() throws IOException {
+
+        StubbingTool.stubGitHubAPI();
+
+        store.beginTransaction();
+
+        scan("incremental/githubissues.xml");
+        scan("incremental/githubissues.xml");
+
+        // The second scan updates the descriptors of the first one:
+        assertEquals(1, query("MATCH (r:GitHub:Repository) RETURN r").getColumn("r").size());
+        assertEquals(1, query("MATCH (i:GitHub:Issue {issueId:\"github-user/github-repository#1347\"}) RETURN i")
+            .getColumn("i").size());
+        assertEquals(1, query("MATCH (i:GitHub:Issue {issueId:\"octocat/Hello-World#1347\"}) RETURN i")
+            .getColumn("i").size());
+        assertEquals(1, query("MATCH (:Repository)-[:HAS_ISSUE]->(i:Issue) RETURN i").getColumn("i").size());
+        assertEquals(1, query("MATCH (:Issue)-[:HAS_COMMENT]->(c:Comment) RETURN c").getColumn("c").size());
+        assertEquals(1, query("MATCH (:Issue)-[:HAS_LABEL]->(l:Label) RETURN l").getColumn("l").size());
+
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo(
+            "/repos/github-user/github-repository/issues?state=all&sort=updated&direction=asc&per_page=100" +
+                "&since=2011-04-22T13:33:48Z")));
+
+        // The issue didn't change, so its details are only requested by the first scan:
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo(
+            "/repos/github-user/github-repository/issues/1347/comments?per_page=100")));
+        wireMockServer.verify(0, getRequestedFor(urlEqualTo("/repos/octocat/Hello-World/pulls/1347")));
+
+        // The second scan only lists the pull requests updated since the first one:
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo(
+            "/repos/github-user/github-repository/pulls?state=all&sort=updated&direction=desc&per_page=100")));
+
+        store.commitTransaction();
+    }
+
+    @Test
+    public void scanGitHubIssuesIncrementallyRemovesDueDate() throws IOException {
+
+        StubbingTool.stubGitHubAPI();
+
+        store.beginTransaction();
+
+        scan("incremental/githubissues.xml");
+        assertEquals(1, query("MATCH (m:GitHub:Milestone) WHERE exists(m.dueOn) RETURN m").getColumn("m").size());
+
+        StubbingTool.stubMilestonesWithoutDueDate();
+        scan("incremental/githubissues.xml");
+
+        assertEquals(1, query("MATCH (m:GitHub:Milestone) RETURN m").getColumn("m").size());
+        assertEquals(0L, query("MATCH (m:GitHub:Milestone) WHERE exists(m.dueOn) RETURN count(m) AS milestones")
+            .getColumn("milestones").get(0));
+
+        store.commitTransaction();
+    }
+
+    @Test
+    public void failedWritesOnlyStopTheirRepository() throws IOException {
+
+        StubbingTool.stubGitHubAPI();
+        StubbingTool.stubBrokenRepository();
+
+        store.beginTransaction();
+
+        scan("write-failures/githubissues.xml");
+
+        // The repository behind the failed write gets scanned completely next time:
+        assertEquals(1, query("MATCH (r:GitHub:Repository {repositoryId:\"broken-user/broken-repository\"}) " +
+            "WHERE NOT exists(r.issuesUpdatedAt) RETURN r").getColumn("r").size());
+
+        assertEquals(1, query("MATCH (r:GitHub:Repository {repositoryId:\"github-user/github-repository\"}) " +
+            "WHERE exists(r.issuesUpdatedAt) RETURN r").getColumn("r").size());
+        assertEquals(1, query("MATCH (:Repository {repositoryId:\"github-user/github-repository\"})-[:HAS_ISSUE]->" +
+            "(i:Issue)-[:HAS_COMMENT]->(:Comment) RETURN i").getColumn("i").size());
+
         store.commitTransaction();
     }
+
+    @Test
+    public void scanGitHubIssuesWithGraphQL() throws IOException {
+
+        StubbingTool.stubGitHubAPI();
+
+        List<String> restGraph = scanAndDump("githubissues.xml", 1);
+        List<String> graphQLGraph = scanAndDump("graphql/githubissues.xml", 1);
+
+        assertThat(graphQLGraph).isNotEmpty();
+        assertEquals(restGraph, graphQLGraph);
+
+        // The pull request, its comments and the rendered markdown came with the pages of the GraphQL API:
+        wireMockServer.verify(3, postRequestedFor(urlEqualTo("/graphql")));
+        wireMockServer.verify(1, postRequestedFor(urlEqualTo("/markdown")));
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo(
+            "/repos/github-user/github-repository/issues/1347/comments?per_page=100")));
+    }
+
+    @Test
+    public void scanGitHubIssuesWithGraphQLPagination() throws IOException {
+
+        StubbingTool.stubGitHubAPI();
+        StubbingTool.stubNestedPagination();
+
+        List<String> restGraph = scanAndDump("githubissues.xml", 1);
+        List<String> graphQLGraph = scanAndDump("graphql/githubissues.xml", 1);
+
+        assertEquals(restGraph, graphQLGraph);
+
+        // The issue and the pull request were merged, the comments of the pull request continued on a second page:
+        store.beginTransaction();
+        assertEquals(2, query("MATCH (:Repository)-[:HAS_ISSUE]->(i:Issue) RETURN i").getColumn("i").size());
+        assertEquals(1, query("MATCH (:Issue {number:1347})-[:HAS_COMMENT]->(:Comment)-[:FOLLOWED_BY]->" +
+            "(c:Comment {commentId:2}) RETURN c").getColumn("c").size());
+        store.commitTransaction();
+
+        // Milestones, issues, pull requests and the second page of comments:
+        wireMockServer.verify(4, postRequestedFor(urlEqualTo("/graphql")));
+        wireMockServer.verify(1, postRequestedFor(urlEqualTo("/graphql"))
+            .withRequestBody(containing("node(id:")));
+    }
+
+    @Test
+    public void scanGitHubIssuesInVirtualThreadMode() throws IOException {
+
+        StubbingTool.stubGitHubAPI();
+
+        // Every issue is crawled as a task of its own, on a virtual thread if the JVM has them, before Java 21 on the
+        // comment threads:
+        List<String> platformGraph = scanAndDump("githubissues.xml", 1);
+        List<String> virtualGraph = scanAndDump("virtual-threads/githubissues.xml", 1);
+
+        assertThat(virtualGraph).isNotEmpty();
+        assertEquals(platformGraph, virtualGraph);
+    }
+
+    @Test
+    public void scanGitHubIssuesInBatches() throws IOException {
+
+        StubbingTool.stubGitHubAPI();
+
+        List<String> singleTransactionGraph = scanAndDump("githubissues.xml", 1);
+
+        // Every issue is committed on its own, the descriptors created before stay usable:
+        List<String> batchedGraph = scanAndDump("batches/githubissues.xml", 2);
+
+        assertThat(batchedGraph).isNotEmpty();
+        assertEquals(singleTransactionGraph, batchedGraph);
+    }
+
+    @Test
+    public void scanGitHubIssuesWithCypherWriter() throws IOException {
+
+        StubbingTool.stubGitHubAPI();
+
+        List<String> xoGraph = scanAndDump("githubissues.xml", 1);
+
+        // The second scan updates the issue written by the first one through XO:
+        List<String> cypherGraph = scanAndDump("cypher-writer/githubissues.xml", 2);
+
+        assertThat(cypherGraph).isNotEmpty();
+        assertEquals(xoGraph, cypherGraph);
+
+        // The nodes created by Cypher can be read through XO:
+        store.beginTransaction();
+        GitHubRepository repository = (GitHubRepository) query("MATCH (r:GitHub:Repository) RETURN r")
+            .getColumn("r").get(0);
+        assertEquals(1347, repository.getContains().get(0).getNumber());
+        store.commitTransaction();
+    }
+
+    /**
+     * Scans a configuration file of the test resources. Every file is scanned as "/githubissues.xml", so the graphs
+     * of two configurations only differ by what the configurations change.
+     *
+     * @param resource The configuration file, e.g. "graphql/githubissues.xml".
+     * @return The descriptor of the configuration file.
+     */
+    private Descriptor scan(String resource) {
+
+        File file = new File(Objects.requireNonNull(getClass().getClassLoader().getResource(resource)).getFile());
+        return getScanner().scan(file, "/githubissues.xml", DefaultScope.NONE);
+    }
+
+    /**
+     * Scans a configuration file into an empty store.
+     *
+     * @param resource The configuration file, e.g. "graphql/githubissues.xml".
+     * @param scans    How often the file gets scanned, every scan updates the descriptors of the previous one.
+     * @return The graph, see {@link #dumpGraph()}.
+     */
+    private List<String> scanAndDump(String resource, int scans) {
+
+        store.reset();
+
+        store.beginTransaction();
+        for (int i = 0; i < scans; i++) {
+            scan(resource);
+        }
+        List<String> graph = dumpGraph();
+        store.commitTransaction();
+
+        return graph;
+    }
+
+    /**
+     * @return Every relationship and node of the store as a sorted list of strings which doesn't depend on the ids
+     * of the nodes.
+     */
+    private List<String> dumpGraph() {
+
+        List<String> graph = new ArrayList<>();
+        for (Map<String, Object> row : query(
+            "MATCH (n) OPTIONAL MATCH (n)-[r]->(m) " +
+                "RETURN labels(n) AS n, properties(n) AS np, type(r) AS r, properties(r) AS rp, " +
+                "labels(m) AS m, properties(m) AS mp").getRows()) {
+            graph.add(describe(row.get("n"), row.get("np")) + "-[" + row.get("r") + " " + sorted(row.get("rp")) +
+                "]->" + describe(row.get("m"), row.get("mp")));
+        }
+        Collections.sort(graph);
+        return graph;
+    }
+
+    private static String describe(Object labels, Object properties) {
+
+        if (labels == null) {
+            return "()";
+        }
+        List<String> sortedLabels = new ArrayList<>();
+        for (Object label : (Collection<?>) labels) {
+            sortedLabels.add(label.toString());
+        }
+        Collections.sort(sortedLabels);
+        return "(" + sortedLabels + " " + sorted(properties) + ")";
+    }
+
+    private static String sorted(Object properties) {
+
+        return properties == null ? "{}" : new TreeMap<>((Map<?, ?>) properties).toString();
+    }
 }
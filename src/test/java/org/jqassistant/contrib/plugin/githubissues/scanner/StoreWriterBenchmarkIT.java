@@ -0,0 +1,157 @@
+package org.jqassistant.contrib.plugin.githubissues.scanner;
+
+import com.buschmais.jqassistant.plugin.common.test.AbstractPluginIT;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLCredentials;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLScanOptions;
+import org.jqassistant.contrib.plugin.githubissues.model.GitHubIssuesConfigurationFile;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.cache.CacheEndpoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares how fast the XO and the Cypher store writer import a repository of synthetic issues. The nodes per second
+ * are measured against the time the thread which writes to the store was busy, the requests to the local mock of the
+ * GitHub API don't count.
+ */
+public class StoreWriterBenchmarkIT extends AbstractPluginIT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StoreWriterBenchmarkIT.class);
+
+    private static final String REPOSITORY = "repos/bench-user/bench-repository";
+
+    private static final int ISSUES = 500;
+    private static final int COMMENTS_PER_ISSUE = 4;
+    private static final int USERS = 50;
+    private static final int LABELS = 10;
+
+    private WireMockServer wireMockServer;
+    private String apiUrl;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(options().dynamicPort());
+        wireMockServer.start();
+
+        apiUrl = "http://localhost:" + wireMockServer.port() + "/";
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void compareStoreWriters() throws IOException {
+
+        stub("/" + REPOSITORY + "/milestones?state=all&per_page=100", "[]");
+        stub("/" + REPOSITORY + "/pulls?state=all&per_page=100", "[]");
+        stub("/" + REPOSITORY + "/issues?state=all&sort=updated&direction=asc&per_page=100", issues());
+        stub("/" + REPOSITORY + "/issues/comments?sort=created&direction=asc&per_page=100", comments());
+
+        // The first round warms up the JVM and the query caches of the store:
+        for (int round = 0; round < 2; round++) {
+            long xoNodes = scan(XMLScanOptions.StoreWriter.XO);
+            long cypherNodes = scan(XMLScanOptions.StoreWriter.CYPHER);
+            assertEquals(xoNodes, cypherNodes);
+        }
+    }
+
+    /**
+     * Scans the synthetic repository into an empty store and logs the nodes per second.
+     *
+     * @return The number of nodes in the store afterwards.
+     */
+    private long scan(XMLScanOptions.StoreWriter storeWriter) throws IOException {
+
+        store.reset();
+
+        XMLScanOptions scanOptions = XMLScanOptions.builder()
+            .commentCrawl(XMLScanOptions.CommentCrawl.REPOSITORY)
+            .storeWriter(storeWriter)
+            .build();
+        GraphBuilder graphBuilder = new GraphBuilder(apiUrl, scanOptions, new CacheEndpoint(store));
+
+        store.beginTransaction();
+        graphBuilder.startTraversal(store.create(GitHubIssuesConfigurationFile.class), Collections.singletonList(
+            new XMLGitHubRepository("bench-user", "bench-repository", new XMLCredentials("bench-user", "secret"),
+                XMLGitHubRepository.Markdown.LOCAL)));
+        store.commitTransaction();
+
+        store.beginTransaction();
+        long nodes = ((Number) query("MATCH (n) RETURN count(n) AS nodes").getColumn("nodes").get(0)).longValue();
+        store.commitTransaction();
+
+        double seconds = graphBuilder.getPipelineStatistics().getBusyNanos(PipelineStatistics.Stage.WRITE) / 1e9;
+        LOGGER.info(String.format("Store writer %s: %d nodes in %.2f s, %.1f nodes/s.",
+            storeWriter, nodes, seconds, nodes / seconds));
+
+        return nodes;
+    }
+
+    private static String issues() {
+
+        StringBuilder json = new StringBuilder("[");
+        for (int number = 1; number <= ISSUES; number++) {
+            json.append(number > 1 ? "," : "")
+                .append("{\"number\": ").append(number)
+                .append(", \"title\": \"Issue ").append(number)
+                .append("\", \"body\": \"Something doesn't work as expected.\"")
+                .append(", \"state\": \"open\", \"locked\": false")
+                .append(", \"comments\": ").append(COMMENTS_PER_ISSUE)
+                .append(", \"created_at\": \"2011-04-22T13:33:48Z\", \"updated_at\": \"2011-04-22T13:33:48Z\"")
+                .append(", \"user\": ").append(user(number))
+                .append(", \"assignees\": [").append(user(number + 1)).append("]")
+                .append(", \"labels\": [").append(label(number)).append(",").append(label(number + 1)).append("]}");
+        }
+        return json.append("]").toString();
+    }
+
+    private static String comments() {
+
+        StringBuilder json = new StringBuilder("[");
+        long id = 1;
+        for (int number = 1; number <= ISSUES; number++) {
+            for (int i = 0; i < COMMENTS_PER_ISSUE; i++, id++) {
+                json.append(id > 1 ? "," : "")
+                    .append("{\"id\": ").append(id)
+                    .append(", \"body\": \"Me too\"")
+                    .append(", \"issue_url\": \"https://api.github.com/" + REPOSITORY + "/issues/").append(number)
+                    .append("\", \"created_at\": \"2011-04-22T13:33:48Z\", \"updated_at\": \"2011-04-22T13:33:48Z\"")
+                    .append(", \"user\": ").append(user(number + i)).append("}");
+            }
+        }
+        return json.append("]").toString();
+    }
+
+    private static String user(int i) {
+
+        return "{\"login\": \"user-" + (i % USERS) + "\"}";
+    }
+
+    private static String label(int i) {
+
+        return "{\"name\": \"label-" + (i % LABELS) + "\", \"description\": \"Label " + (i % LABELS) + "\"}";
+    }
+
+    private void stub(String url, String body) {
+
+        wireMockServer.stubFor(get(urlEqualTo(url)).willReturn(aResponse()
+            .withStatus(200)
+            .withHeader("Content-Type", "application/json")
+            .withBody(body)));
+    }
+}
@@ -11,12 +11,15 @@ public abstract class StubbingTool {
 
     public static void stubGitHubAPI() throws IOException {
 
+        configureFor("localhost", 8089);
+
         stubMilestones();
         stubIssues();
         stubPullRequest();
         stubComments();
         stubMarkdown();
         stubSingleIssue();
+        stubGraphQL();
     }
 
     private static void stubMilestones() throws IOException {
@@ -24,18 +27,61 @@ public abstract class StubbingTool {
             "rest-mocks/milestones.json");
     }
 
+    /**
+     * Replaces the milestone listing by one in which the due date of the milestone was removed later on.
+     */
+    public static void stubMilestonesWithoutDueDate() throws IOException {
+
+        String milestones = IOUtils.toString(getInputStreamFromFile("rest-mocks/milestones.json"))
+            .replace("\"updated_at\": \"2014-03-03T18:58:10Z\"", "\"updated_at\": \"2015-01-01T00:00:00Z\"")
+            .replace("\"due_on\": \"2012-10-09T23:39:01Z\"", "\"due_on\": null");
+
+        stubFor(get("/repos/github-user/github-repository/milestones?state=all&per_page=100")
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(milestones)));
+    }
+
+    /**
+     * Stubs a repository whose only issue references an issue that is answered with invalid JSON, so resolving the
+     * reference fails on the thread which writes to the store.
+     */
+    public static void stubBrokenRepository() throws IOException {
+
+        stub("/repos/broken-user/broken-repository/milestones?state=all&per_page=100", "write-failures/empty.json");
+        stub("/repos/broken-user/broken-repository/pulls?state=all&per_page=100", "write-failures/empty.json");
+        stub("/repos/broken-user/broken-repository/issues?state=all&sort=updated&direction=asc&per_page=100",
+            "write-failures/issues.json");
+
+        stubFor(get("/repos/broken-user/unparsable-repository/issues/7")
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"number\": ")));
+    }
+
     private static void stubIssues() throws IOException {
-        stub("/repos/github-user/github-repository/issues?state=all&per_page=100",
+        stub("/repos/github-user/github-repository/issues?state=all&sort=updated&direction=asc&per_page=100",
+            "rest-mocks/issues.json");
+        // The listing of an incremental scan starts at the last update of the previous scan:
+        stub("/repos/github-user/github-repository/issues?state=all&sort=updated&direction=asc&per_page=100" +
+                "&since=2011-04-22T13:33:48Z",
             "rest-mocks/issues.json");
     }
 
     private static void stubPullRequest() throws IOException {
         stub("/repos/octocat/Hello-World/pulls/1347", "rest-mocks/pullrequest.json");
+        stub("/repos/github-user/github-repository/pulls?state=all&per_page=100", "rest-mocks/pullrequests.json");
+        stub("/repos/github-user/github-repository/pulls?state=all&sort=updated&direction=desc&per_page=100",
+            "rest-mocks/pullrequests.json");
     }
 
     private static void stubComments() throws IOException {
         stub("/repos/github-user/github-repository/issues/1347/comments?per_page=100",
             "rest-mocks/comments.json");
+        stub("/repos/github-user/github-repository/issues/comments?sort=created&direction=asc&per_page=100",
+            "rest-mocks/comments.json");
     }
 
     private static void stubMarkdown() throws IOException {
@@ -54,6 +100,41 @@ public abstract class StubbingTool {
         stub("/repos/octocat/Hello-World/issues/1347", "rest-mocks/issue.json");
     }
 
+    private static void stubGraphQL() throws IOException {
+        // The listing of pull requests and issues are separate queries:
+        stubQuery("issues(first", "graphql-mocks/issues.json");
+        stubQuery("pullRequests(first", "graphql-mocks/pullrequests.json");
+        stubQuery("milestones(first", "graphql-mocks/milestones.json");
+    }
+
+    /**
+     * Replaces the issues of both APIs by a pull request whose comments don't fit into the page of pull requests and
+     * an issue which was updated after it.
+     */
+    public static void stubNestedPagination() throws IOException {
+
+        stub("/repos/github-user/github-repository/issues?state=all&sort=updated&direction=asc&per_page=100",
+            "graphql-pagination/rest-issues.json");
+        stub("/repos/github-user/github-repository/issues/1347/comments?per_page=100",
+            "graphql-pagination/rest-comments.json");
+
+        stubQuery("issues(first", "graphql-pagination/issues.json");
+        stubQuery("pullRequests(first", "graphql-pagination/pullrequests.json");
+        stubQuery("node(id:", "graphql-pagination/comments.json");
+    }
+
+    private static void stubQuery(String connection, String fileName) throws IOException {
+
+        InputStream in = getInputStreamFromFile(fileName);
+
+        stubFor(post("/graphql")
+                .withRequestBody(containing(connection))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(IOUtils.toString(in))));
+    }
+
     private static void stub(String url, String fileName) throws IOException {
 
         InputStream in = getInputStreamFromFile(fileName);
@@ -0,0 +1,117 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.matching;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompressionFilterTest {
+
+    private static final String BODY = new String(new char[2000]).replace("\0", "{\"title\":\"Found a bug\"},");
+
+    private WireMockServer wireMockServer;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(options().dynamicPort());
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void gzipResponsesGetDecoded() throws IOException {
+
+        wireMockServer.stubFor(get(urlPathEqualTo("/repos/octocat/Hello-World/issues"))
+            .willReturn(aResponse().withStatus(200).withBody(BODY)));
+
+        try (HttpTransport httpTransport = new HttpTransport(1, 60)) {
+
+            String entity = httpTransport.getClient()
+                .resource("http://localhost:" + wireMockServer.port() + "/repos/octocat/Hello-World/issues")
+                .get(String.class);
+
+            assertEquals(BODY, entity);
+
+            CompressionFilter filter = httpTransport.getCompressionFilter();
+            assertEquals(BODY.length(), filter.getDecodedBytes("issues"));
+            assertTrue(filter.getWireBytes("issues") < BODY.length() / 10);
+        }
+
+        wireMockServer.verify(getRequestedFor(urlPathEqualTo("/repos/octocat/Hello-World/issues"))
+            .withHeader("Accept-Encoding", matching(".*gzip.*")));
+    }
+
+    @Test
+    public void deflateResponsesGetDecoded() throws IOException {
+
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try (DeflaterOutputStream output = new DeflaterOutputStream(deflated)) {
+            output.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+
+        wireMockServer.stubFor(get(urlPathEqualTo("/repos/octocat/Hello-World/milestones"))
+            .willReturn(aResponse().withStatus(200)
+                .withHeader("Content-Encoding", "deflate")
+                .withBody(deflated.toByteArray())));
+
+        try (HttpTransport httpTransport = new HttpTransport(1, 60)) {
+
+            String entity = httpTransport.getClient()
+                .resource("http://localhost:" + wireMockServer.port() + "/repos/octocat/Hello-World/milestones")
+                .get(String.class);
+
+            assertEquals(BODY, entity);
+            assertEquals(deflated.size(), httpTransport.getCompressionFilter().getWireBytes("milestones"));
+        }
+    }
+
+    @Test
+    public void emptyEncodedResponsesAreEmpty() throws IOException {
+
+        for (String encoding : new String[]{"gzip", "deflate"}) {
+
+            wireMockServer.stubFor(get(urlPathEqualTo("/repos/octocat/Hello-World/labels"))
+                .willReturn(aResponse().withStatus(200)
+                    .withHeader("Content-Encoding", encoding)
+                    .withBody(new byte[0])));
+
+            try (HttpTransport httpTransport = new HttpTransport(1, 60)) {
+
+                String entity = httpTransport.getClient()
+                    .resource("http://localhost:" + wireMockServer.port() + "/repos/octocat/Hello-World/labels")
+                    .get(String.class);
+
+                assertEquals("", entity, encoding);
+            }
+        }
+    }
+
+    @Test
+    public void endpointsIgnoreRepositoryAndNumbers() {
+
+        assertEquals("issues/{number}/comments", CompressionFilter.getEndpoint(
+            URI.create("https://api.github.com/repos/octocat/Hello-World/issues/1347/comments?per_page=100")));
+        assertEquals("pulls/{number}", CompressionFilter.getEndpoint(
+            URI.create("https://github.example.com/api/v3/repos/octocat/Hello-World/pulls/1347")));
+        assertEquals("markdown", CompressionFilter.getEndpoint(URI.create("https://api.github.com/markdown")));
+    }
+}
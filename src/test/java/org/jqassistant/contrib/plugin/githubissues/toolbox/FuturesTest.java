@@ -0,0 +1,56 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FuturesTest {
+
+    @Test
+    public void failuresOfTheRequestAreRethrown() {
+
+        RequestFailedException requestFailed = new RequestFailedException("Not Found", 404, false);
+        IOException ioException = new IOException("Connection reset");
+        IllegalStateException runtimeException = new IllegalStateException("Unexpected response");
+        StackOverflowError error = new StackOverflowError();
+
+        assertSame(requestFailed,
+            assertThrows(RequestFailedException.class, () -> Futures.await(failed(requestFailed))));
+        assertSame(ioException, assertThrows(IOException.class, () -> Futures.await(failed(ioException))));
+        assertSame(runtimeException,
+            assertThrows(IllegalStateException.class, () -> Futures.await(failed(runtimeException))));
+        assertSame(error, assertThrows(StackOverflowError.class, () -> Futures.await(failed(error))));
+    }
+
+    @Test
+    public void interruptsAreKept() {
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedIOException.class, () -> Futures.await(new CompletableFuture<>()));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void responsesAreReturned() throws Exception {
+
+        assertEquals("response", Futures.await(CompletableFuture.completedFuture("response")));
+    }
+
+    private static CompletableFuture<String> failed(Throwable failure) {
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+}
@@ -0,0 +1,65 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.BasicCredentials;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLCredentials;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HttpTransportTest {
+
+    private WireMockServer wireMockServer;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(options().dynamicPort());
+        wireMockServer.start();
+
+        wireMockServer.stubFor(get(urlPathEqualTo("/repos/first-user/first-repository/milestones"))
+            .willReturn(aResponse().withStatus(200).withBody("[]")));
+        wireMockServer.stubFor(get(urlPathEqualTo("/repos/second-user/second-repository/milestones"))
+            .willReturn(aResponse().withStatus(200).withBody("[]")));
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void repositoriesShareConnectionsButNotCredentials() throws IOException {
+
+        String apiUrl = "http://localhost:" + wireMockServer.port() + "/";
+
+        try (HttpTransport httpTransport = new HttpTransport(4, 60)) {
+
+            RestTool first = new RestTool(apiUrl, new XMLGitHubRepository("first-user", "first-repository",
+                new XMLCredentials("first-user", "first-secret")), httpTransport, null);
+            RestTool second = new RestTool(apiUrl, new XMLGitHubRepository("second-user", "second-repository",
+                new XMLCredentials("second-user", "second-secret")), httpTransport, null);
+
+            first.requestMilestonesByRepository();
+            second.requestMilestonesByRepository();
+            first.requestMilestonesByRepository();
+
+            assertEquals(3, httpTransport.getRequestCount());
+            assertEquals(1, httpTransport.getConnectionCount());
+        }
+
+        wireMockServer.verify(2, getRequestedFor(urlPathEqualTo("/repos/first-user/first-repository/milestones"))
+            .withBasicAuth(new BasicCredentials("first-user", "first-secret")));
+        wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/repos/second-user/second-repository/milestones"))
+            .withBasicAuth(new BasicCredentials("second-user", "second-secret")));
+    }
+}
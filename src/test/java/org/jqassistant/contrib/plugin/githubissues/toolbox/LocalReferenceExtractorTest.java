@@ -0,0 +1,93 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Every markdown file of the corpus comes with the HTML GitHub rendered for it. The local extraction must find
+ * the same references as the rendered HTML contains.
+ */
+public class LocalReferenceExtractorTest {
+
+    private final LocalReferenceExtractor extractor = new LocalReferenceExtractor("https://api.github.com/");
+
+    @Test
+    public void issues() throws IOException {
+
+        assertSameReferencesAsRenderedMarkdown("issues");
+    }
+
+    @Test
+    public void users() throws IOException {
+
+        assertSameReferencesAsRenderedMarkdown("users");
+    }
+
+    @Test
+    public void commits() throws IOException {
+
+        MarkdownReferences rendered = RenderedReferenceExtractor.parseHtml(read("commits.html"));
+        String markdown = read("commits.md");
+
+        // GitHub links abbreviated SHAs with their full SHA, which can't be known locally:
+        MarkdownReferences expected = new MarkdownReferences();
+        for (MarkdownReferences.CommitReference commit : rendered.getCommits()) {
+            if (markdown.contains(commit.getCommitSha())) {
+                expected.addCommit(commit.getRepoUser(), commit.getRepoName(), commit.getCommitSha());
+            }
+        }
+
+        assertEquals(rendered.getCommits().size() - 2, expected.getCommits().size());
+        assertEquals(expected, extractor.extract(markdown, "octocat", "Hello-World"));
+    }
+
+    @Test
+    public void code() throws IOException {
+
+        assertSameReferencesAsRenderedMarkdown("code");
+    }
+
+    @Test
+    public void lists() throws IOException {
+
+        assertSameReferencesAsRenderedMarkdown("lists");
+    }
+
+    @Test
+    public void urlsOfEnterpriseServers() {
+
+        MarkdownReferences expected = new MarkdownReferences();
+        expected.addIssue("octocat", "Hello-World", 12);
+
+        for (String apiUrl : new String[]{"https://github.example.com/api/v3/", "https://api.github.example.com/"}) {
+
+            MarkdownReferences references = new LocalReferenceExtractor(apiUrl).extract(
+                "See https://github.example.com/octocat/Hello-World/issues/12", "octocat", "Hello-World");
+
+            assertEquals(expected, references);
+        }
+    }
+
+    private void assertSameReferencesAsRenderedMarkdown(String name) throws IOException {
+
+        MarkdownReferences rendered = RenderedReferenceExtractor.parseHtml(read(name + ".html"));
+        MarkdownReferences local = extractor.extract(read(name + ".md"), "octocat", "Hello-World");
+
+        assertEquals(rendered, local);
+    }
+
+    private static String read(String fileName) throws IOException {
+
+        try (InputStream in = Objects.requireNonNull(
+            LocalReferenceExtractorTest.class.getClassLoader().getResourceAsStream("markdown-corpus/" + fileName))) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLCredentials;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONComment;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONIssue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PageIteratorTest {
+
+    private static final String FIRST_PAGE = "/repos/octocat/Hello-World/issues?state=all&sort=updated&direction=asc&per_page=100";
+    private static final String SECOND_PAGE = FIRST_PAGE + "&page=2";
+    private static final String THIRD_PAGE = FIRST_PAGE + "&page=3";
+
+    private WireMockServer wireMockServer;
+    private String apiUrl;
+    private HttpTransport httpTransport;
+    private RestTool restTool;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(options().dynamicPort());
+        wireMockServer.start();
+
+        apiUrl = "http://localhost:" + wireMockServer.port() + "/";
+
+        wireMockServer.stubFor(get(urlEqualTo(FIRST_PAGE)).willReturn(aResponse().withStatus(200)
+            .withHeader("Link", "<" + apiUrl + SECOND_PAGE.substring(1) + ">; rel=\"next\"")
+            .withBody("[{\"number\": 1, \"title\": \"First\"}, {\"number\": 2, \"title\": \"Second\"}]")));
+        wireMockServer.stubFor(get(urlEqualTo(SECOND_PAGE)).willReturn(aResponse().withStatus(200)
+            .withBody("[{\"number\": 3, \"title\": \"Third\"}]")));
+
+        httpTransport = new HttpTransport(2, 60, 1, 0);
+        restTool = new RestTool(apiUrl, new XMLGitHubRepository("octocat", "Hello-World",
+            new XMLCredentials("octocat", "secret")), httpTransport, null);
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        httpTransport.close();
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void pagesAreRequestedWhenTheyAreReached() throws IOException {
+
+        try (PageIterator<JSONIssue> issues = restTool.requestIssuesByRepository(null)) {
+
+            assertEquals(1, issues.next().getNumber());
+            assertEquals(2, issues.next().getNumber());
+
+            wireMockServer.verify(0, getRequestedFor(urlEqualTo(SECOND_PAGE)));
+
+            assertTrue(issues.hasNext());
+            assertEquals(3, issues.next().getNumber());
+            assertFalse(issues.hasNext());
+        }
+
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo(FIRST_PAGE)));
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo(SECOND_PAGE)));
+    }
+
+    @Test
+    public void aPageDoesNotHoldItsConnection() throws IOException {
+
+        String comments = "/repos/octocat/Hello-World/issues/1/comments?per_page=100";
+        wireMockServer.stubFor(get(urlEqualTo(comments)).willReturn(aResponse().withStatus(200)
+            .withBody("[{\"id\": 1, \"body\": \"First\"}]")));
+
+        try (HttpTransport singleConnection = new HttpTransport(1, 60, 1, 0)) {
+
+            RestTool singleConnectionRestTool = new RestTool(apiUrl, new XMLGitHubRepository("octocat",
+                "Hello-World", new XMLCredentials("octocat", "secret")), singleConnection, null);
+
+            // The comments of an issue are requested while the page of the issue is processed:
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                try (PageIterator<JSONIssue> issues = singleConnectionRestTool.requestIssuesByRepository(null)) {
+
+                    assertEquals(1, issues.next().getNumber());
+                    assertEquals(1, singleConnectionRestTool.requestCommentsByIssue(1, 1).size());
+                    assertEquals(2, issues.next().getNumber());
+                }
+            });
+        }
+    }
+
+    @Test
+    public void theNextPageIsPrefetched() throws IOException, InterruptedException {
+
+        try (HttpTransport prefetchingTransport = new HttpTransport(2, 60, 1, 1)) {
+
+            RestTool prefetchingRestTool = new RestTool(apiUrl, new XMLGitHubRepository("octocat", "Hello-World",
+                new XMLCredentials("octocat", "secret")), prefetchingTransport, null);
+
+            try (PageIterator<JSONIssue> issues = prefetchingRestTool.requestIssuesByRepository(null)) {
+
+                assertEquals(1, issues.next().getNumber());
+
+                // The second page gets requested while the first one is processed:
+                for (int i = 0; i < 50 && wireMockServer.findAll(getRequestedFor(urlEqualTo(SECOND_PAGE))).isEmpty(); i++) {
+                    Thread.sleep(100);
+                }
+                wireMockServer.verify(1, getRequestedFor(urlEqualTo(SECOND_PAGE)));
+
+                assertEquals(2, issues.next().getNumber());
+                assertEquals(3, issues.next().getNumber());
+                assertFalse(issues.hasNext());
+            }
+        }
+    }
+
+    @Test
+    public void anErrorWhilePrefetchingReachesTheIterator() throws IOException {
+
+        try (HttpTransport prefetchingTransport = new HttpTransport(2, 60, 1, 1)) {
+
+            RestTool brokenRestTool = new RestTool(apiUrl, new XMLGitHubRepository("octocat", "Hello-World",
+                new XMLCredentials("octocat", "secret")), prefetchingTransport, null) {
+                @Override
+                RestResponse requestPage(String url) throws IOException, RequestFailedException {
+                    if (url.endsWith(SECOND_PAGE)) {
+                        throw new StackOverflowError();
+                    }
+                    return super.requestPage(url);
+                }
+            };
+
+            try (PageIterator<JSONIssue> issues = brokenRestTool.requestIssuesByRepository(null)) {
+
+                // The iterator must not wait for a page the prefetcher won't deliver:
+                assertThrows(StackOverflowError.class,
+                    () -> assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                        while (issues.hasNext()) {
+                            issues.next();
+                        }
+                    }));
+            }
+        }
+    }
+
+    @Test
+    public void aFailingPageEndsTheIteration() throws IOException {
+
+        wireMockServer.stubFor(get(urlEqualTo(SECOND_PAGE)).willReturn(aResponse().withStatus(500)));
+
+        int count = 0;
+        try (PageIterator<JSONIssue> issues = restTool.requestIssuesByRepository(null)) {
+            while (issues.hasNext()) {
+                issues.next();
+                count++;
+            }
+        }
+
+        assertEquals(2, count);
+    }
+
+    @Test
+    public void pagesAreRequestedInParallelUpToTheLastPage() throws IOException {
+
+        wireMockServer.stubFor(get(urlEqualTo(FIRST_PAGE)).willReturn(aResponse().withStatus(200)
+            .withHeader("Link", "<" + apiUrl + SECOND_PAGE.substring(1) + ">; rel=\"next\", " +
+                "<" + apiUrl + THIRD_PAGE.substring(1) + ">; rel=\"last\"")
+            .withBody("[{\"number\": 1, \"title\": \"First\"}]")));
+        wireMockServer.stubFor(get(urlEqualTo(SECOND_PAGE)).willReturn(aResponse().withStatus(200)
+            .withFixedDelay(200)
+            .withBody("[{\"number\": 2, \"title\": \"Second\"}]")));
+        wireMockServer.stubFor(get(urlEqualTo(THIRD_PAGE)).willReturn(aResponse().withStatus(200)
+            .withBody("[{\"number\": 3, \"title\": \"Third\"}]")));
+
+        try (HttpTransport parallelTransport = new HttpTransport(4, 60, 4, 0)) {
+
+            RestTool parallelRestTool = new RestTool(apiUrl, new XMLGitHubRepository("octocat", "Hello-World",
+                new XMLCredentials("octocat", "secret")), parallelTransport, null);
+
+            try (PageIterator<JSONIssue> issues = parallelRestTool.requestIssuesByRepository(null)) {
+
+                // Both remaining pages got requested with the first one, the slow second page is still returned first:
+                assertEquals(1, issues.next().getNumber());
+                assertEquals(2, issues.next().getNumber());
+                assertEquals(3, issues.next().getNumber());
+                assertFalse(issues.hasNext());
+            }
+        }
+
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo(SECOND_PAGE)));
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo(THIRD_PAGE)));
+    }
+
+    @Test
+    public void theCommentCountPlansTheRequests() throws IOException {
+
+        String comments = "/repos/octocat/Hello-World/issues/1347/comments?per_page=100";
+
+        wireMockServer.stubFor(get(urlEqualTo(comments + "&page=1")).willReturn(aResponse().withStatus(200)
+            .withFixedDelay(200)
+            .withBody("[{\"id\": 1, \"body\": \"First\"}]")));
+        wireMockServer.stubFor(get(urlEqualTo(comments + "&page=2")).willReturn(aResponse().withStatus(200)
+            .withBody("[{\"id\": 2, \"body\": \"Second\"}]")));
+
+        try (HttpTransport parallelTransport = new HttpTransport(4, 60, 4, 0)) {
+
+            RestTool parallelRestTool = new RestTool(apiUrl, new XMLGitHubRepository("octocat", "Hello-World",
+                new XMLCredentials("octocat", "secret")), parallelTransport, null);
+
+            // No comments, no request:
+            assertTrue(parallelRestTool.requestCommentsByIssue(1347, 0).isEmpty());
+
+            // Both pages are requested at once, they keep their order:
+            List<JSONComment> jsonComments = parallelRestTool.requestCommentsByIssue(1347, 150);
+            assertEquals(2, jsonComments.size());
+            assertEquals(1, jsonComments.get(0).getId());
+            assertEquals(2, jsonComments.get(1).getId());
+        }
+
+        wireMockServer.verify(0, getRequestedFor(urlEqualTo(comments)));
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo(comments + "&page=1")));
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo(comments + "&page=2")));
+    }
+}
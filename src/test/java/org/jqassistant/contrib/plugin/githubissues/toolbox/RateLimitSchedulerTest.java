@@ -0,0 +1,89 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RateLimitSchedulerTest {
+
+    private static final long NOW = 1_000_000_000L;
+
+    // The limit gets reset in one hour:
+    private static final long RESET_AT_SECONDS = NOW / 1000 + 3600;
+
+    @Test
+    public void fullSpeedWithoutInformation() {
+
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+
+        assertEquals(0, scheduler.reserve(NOW));
+        assertEquals(0, scheduler.reserve(NOW));
+    }
+
+    @Test
+    public void fullSpeedWithPlentyOfBudget() {
+
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        scheduler.update(NOW, 5000, 4000, RESET_AT_SECONDS, -1);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, scheduler.reserve(NOW));
+        }
+    }
+
+    @Test
+    public void concurrencyLimitedByBudget() {
+
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+
+        assertEquals(100, scheduler.concurrencyLimit(NOW, 100));
+
+        // Requests get paced below 1000 remaining requests, so 50 can be sent at full speed:
+        scheduler.update(NOW, 5000, 1050, RESET_AT_SECONDS, -1);
+        assertEquals(50, scheduler.concurrencyLimit(NOW, 100));
+
+        scheduler.update(NOW, 5000, 100, RESET_AT_SECONDS, -1);
+        assertEquals(1, scheduler.concurrencyLimit(NOW, 100));
+
+        // After the reset the whole limit is available again:
+        assertEquals(100, scheduler.concurrencyLimit(RESET_AT_SECONDS * 1000, 100));
+    }
+
+    @Test
+    public void pacedWithLowBudget() {
+
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        scheduler.update(NOW, 5000, 100, RESET_AT_SECONDS, -1);
+
+        // 100 requests left for 3600 s: one request every 36 s.
+        assertEquals(0, scheduler.reserve(NOW));
+        assertEquals(36_000, scheduler.reserve(NOW));
+    }
+
+    @Test
+    public void blockedWithoutBudget() {
+
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        scheduler.update(NOW, 5000, 0, RESET_AT_SECONDS, -1);
+
+        assertEquals(3_600_000, scheduler.reserve(NOW));
+
+        // A late response from the same window must not raise the budget again:
+        scheduler.update(NOW, 5000, 10, RESET_AT_SECONDS, -1);
+
+        assertEquals(3_600_000, scheduler.reserve(NOW));
+
+        // After the reset requests may be sent at full speed:
+        assertEquals(0, scheduler.reserve(RESET_AT_SECONDS * 1000));
+    }
+
+    @Test
+    public void blockedByRetryAfter() {
+
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        scheduler.update(NOW, -1, -1, -1, 60);
+
+        assertEquals(60_000, scheduler.reserve(NOW));
+        assertEquals(0, scheduler.reserve(NOW + 60_000));
+    }
+}
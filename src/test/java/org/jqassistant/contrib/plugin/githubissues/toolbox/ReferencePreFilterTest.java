@@ -0,0 +1,34 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReferencePreFilterTest {
+
+    @Test
+    public void textsWithoutReferences() {
+
+        assertFalse(ReferencePreFilter.mayContainReferences(null));
+        assertFalse(ReferencePreFilter.mayContainReferences(""));
+        assertFalse(ReferencePreFilter.mayContainReferences("+1"));
+        assertFalse(ReferencePreFilter.mayContainReferences("LGTM, thanks!"));
+        assertFalse(ReferencePreFilter.mayContainReferences("# Heading\n\nSee https://example.com/docs for 2020."));
+    }
+
+    @Test
+    public void textsWithPossibleReferences() {
+
+        assertTrue(ReferencePreFilter.mayContainReferences("Fixes #12"));
+        assertTrue(ReferencePreFilter.mayContainReferences("Fixes GH-12"));
+        assertTrue(ReferencePreFilter.mayContainReferences("Thanks @octocat"));
+        assertTrue(ReferencePreFilter.mayContainReferences("Reverted 7fd1a60"));
+        assertTrue(ReferencePreFilter.mayContainReferences("See https://github.com/octocat/Hello-World/pull/3"));
+        assertTrue(ReferencePreFilter.mayContainReferences("See https://git.example.com/octocat/Hello-World/issues/3"));
+
+        // Every reference found by the local extraction has to pass:
+        assertTrue(ReferencePreFilter.mayContainReferences("octocat/Hello-World#1"));
+        assertTrue(ReferencePreFilter.mayContainReferences("octocat/Hello-World@7fd1a60"));
+    }
+}
@@ -0,0 +1,117 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLCredentials;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONComment;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONIssue;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONMilestone;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RestToolTest {
+
+    private static final String MILESTONES = "/repos/octocat/Hello-World/milestones?state=all&per_page=100";
+    private static final String PULL_REQUEST = "repos/octocat/Hello-World/pulls/1347";
+
+    private WireMockServer wireMockServer;
+    private String apiUrl;
+    private HttpTransport httpTransport;
+    private RestTool restTool;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(options().dynamicPort());
+        wireMockServer.start();
+
+        apiUrl = "http://localhost:" + wireMockServer.port() + "/";
+
+        httpTransport = new HttpTransport(2, 60);
+        restTool = new RestTool(apiUrl, new XMLGitHubRepository("octocat", "Hello-World",
+            new XMLCredentials("octocat", "secret")), httpTransport, null);
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        httpTransport.close();
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void asyncRequestsCanBeComposed() throws ExecutionException, InterruptedException {
+
+        wireMockServer.stubFor(get(urlEqualTo(MILESTONES)).willReturn(aResponse().withStatus(200)
+            .withFixedDelay(200)
+            .withBody("[{\"number\": 1, \"title\": \"v1.0\"}]")));
+        wireMockServer.stubFor(get(urlEqualTo("/" + PULL_REQUEST)).willReturn(aResponse().withStatus(200)
+            .withFixedDelay(200)
+            .withBody("{\"number\": 1347, \"merge_commit_sha\": \"e5bd3914e2e596debea16f433f57875b5b90bcd6\"}")));
+
+        // Both requests are sent before either of them is answered:
+        CompletableFuture<List<JSONMilestone>> milestones = restTool.requestMilestonesByRepositoryAsync();
+        CompletableFuture<JSONIssue> pullRequest = restTool.requestPullRequestByAbsoluteUrlAsync(apiUrl + PULL_REQUEST);
+
+        String result = milestones.thenCombine(pullRequest,
+            (jsonMilestones, jsonPullRequest) -> jsonMilestones.get(0).getTitle() + " " +
+                jsonPullRequest.getMergeCommitSha()).get();
+
+        assertEquals("v1.0 e5bd3914e2e596debea16f433f57875b5b90bcd6", result);
+    }
+
+    @Test
+    public void failedRequestsCompleteExceptionally() {
+
+        wireMockServer.stubFor(get(urlEqualTo("/" + PULL_REQUEST)).willReturn(aResponse().withStatus(404)
+            .withBody("{\"message\": \"Not Found\"}")));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> restTool.requestPullRequestByAbsoluteUrlAsync(apiUrl + PULL_REQUEST).get());
+
+        assertTrue(e.getCause() instanceof RequestFailedException);
+        assertEquals(404, ((RequestFailedException) e.getCause()).getStatus());
+    }
+
+    @Test
+    public void errorsCompleteExceptionally() {
+
+        RestTool brokenRestTool = new RestTool(apiUrl, new XMLGitHubRepository("octocat", "Hello-World",
+            new XMLCredentials("octocat", "secret")), httpTransport, null) {
+            @Override
+            public List<JSONMilestone> requestMilestonesByRepository() {
+                throw new StackOverflowError();
+            }
+        };
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> brokenRestTool.requestMilestonesByRepositoryAsync().get(10, TimeUnit.SECONDS));
+
+        assertTrue(e.getCause() instanceof StackOverflowError);
+    }
+
+    @Test
+    public void issuesWithoutCommentsNeedNoRequest() throws ExecutionException, InterruptedException {
+
+        CompletableFuture<List<JSONComment>> comments = restTool.requestCommentsByIssueAsync(1347, 0);
+
+        assertTrue(comments.isDone());
+        assertTrue(comments.get().isEmpty());
+        wireMockServer.verify(0, anyRequestedFor(anyUrl()));
+    }
+}
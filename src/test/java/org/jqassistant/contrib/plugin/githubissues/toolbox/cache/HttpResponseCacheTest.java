@@ -0,0 +1,137 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpResponseCacheTest {
+
+    private static final String URL = "https://api.github.com/repos/octocat/Hello-World/issues?state=all&per_page=100";
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void responsesSurviveReopening() throws IOException {
+
+        HttpResponseCache cache = new HttpResponseCache(directory, 1024 * 1024);
+        cache.put(URL, "user", "secret", new HttpResponseCache.Entry("\"abc\"", null, "<next>; rel=\"next\"", "[]"));
+
+        HttpResponseCache.Entry entry = new HttpResponseCache(directory, 1024 * 1024).get(URL, "user", "secret");
+
+        assertNotNull(entry);
+        assertEquals("\"abc\"", entry.getETag());
+        assertNull(entry.getLastModified());
+        assertEquals("<next>; rel=\"next\"", entry.getLink());
+        assertEquals("[]", entry.getBody());
+    }
+
+    @Test
+    public void responsesAreKeyedByCredentials() throws IOException {
+
+        HttpResponseCache cache = new HttpResponseCache(directory, 1024 * 1024);
+        cache.put(URL, "user", "secret", new HttpResponseCache.Entry("\"abc\"", null, null, "[]"));
+
+        assertNull(cache.get(URL, "other-user", "secret"));
+    }
+
+    @Test
+    public void responsesWithoutValidatorsAreNotCached() throws IOException {
+
+        HttpResponseCache cache = new HttpResponseCache(directory, 1024 * 1024);
+        cache.put(URL, "user", "secret", new HttpResponseCache.Entry(null, null, null, "[]"));
+
+        assertNull(cache.get(URL, "user", "secret"));
+    }
+
+    @Test
+    public void leastRecentlyUsedResponsesGetEvicted() throws IOException {
+
+        String body = new String(new char[400]).replace('\0', 'x');
+
+        // Room for two entries only:
+        HttpResponseCache cache = new HttpResponseCache(directory, 1000);
+        cache.put(URL + "&page=1", "user", "secret", new HttpResponseCache.Entry("\"1\"", null, null, body));
+        cache.put(URL + "&page=2", "user", "secret", new HttpResponseCache.Entry("\"2\"", null, null, body));
+
+        // Use the first page, so the second one is evicted next:
+        assertNotNull(cache.get(URL + "&page=1", "user", "secret"));
+
+        cache.put(URL + "&page=3", "user", "secret", new HttpResponseCache.Entry("\"3\"", null, null, body));
+
+        assertNotNull(cache.get(URL + "&page=1", "user", "secret"));
+        assertNull(cache.get(URL + "&page=2", "user", "secret"));
+        assertNotNull(cache.get(URL + "&page=3", "user", "secret"));
+    }
+
+    @Test
+    public void failedWritesLeaveNoTemporaryFiles() throws IOException {
+
+        HttpResponseCache cache = new HttpResponseCache(directory, 1024 * 1024);
+        cache.put(URL, "user", "secret", new HttpResponseCache.Entry("\"abc\"", null, null, "[]"));
+
+        // A non-empty directory in place of the entry lets the move fail:
+        File entry = directory.listFiles()[0];
+        assertTrue(entry.delete());
+        assertTrue(new File(entry, "blocker").mkdirs());
+
+        cache.put(URL, "user", "secret", new HttpResponseCache.Entry("\"def\"", null, null, "[]"));
+
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void entriesDeletedInTheMeantimeAreMisses() throws IOException {
+
+        HttpResponseCache cache = new HttpResponseCache(directory, 1024 * 1024);
+        cache.put(URL, "user", "secret", new HttpResponseCache.Entry("\"abc\"", null, null, "[]"));
+
+        // As if another thread evicted the entry between the lookup in the index and the read:
+        assertTrue(directory.listFiles()[0].delete());
+
+        assertNull(cache.get(URL, "user", "secret"));
+
+        cache.put(URL, "user", "secret", new HttpResponseCache.Entry("\"def\"", null, null, "[]"));
+
+        assertEquals("\"def\"", cache.get(URL, "user", "secret").getETag());
+    }
+
+    @Test
+    public void concurrentRequestsShareTheCache() throws Exception {
+
+        HttpResponseCache cache = new HttpResponseCache(directory, 1024 * 1024);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> requests = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String url = URL + "&page=" + i % 10;
+                requests.add(executor.submit(() -> {
+                    cache.put(url, "user", "secret", new HttpResponseCache.Entry("\"abc\"", null, null, url));
+                    HttpResponseCache.Entry entry = cache.get(url, "user", "secret");
+                    assertNotNull(entry);
+                    assertEquals(url, entry.getBody());
+                    return null;
+                }));
+            }
+            for (Future<?> request : requests) {
+                request.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(10, directory.listFiles().length);
+    }
+}
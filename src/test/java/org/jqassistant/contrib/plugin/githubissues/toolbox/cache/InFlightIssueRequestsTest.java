@@ -0,0 +1,148 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox.cache;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.jqassistant.contrib.plugin.githubissues.ids.IssueID;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLCredentials;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
+import org.jqassistant.contrib.plugin.githubissues.json.JSONIssue;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.HttpTransport;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.RequestFailedException;
+import org.jqassistant.contrib.plugin.githubissues.toolbox.RestTool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class InFlightIssueRequestsTest {
+
+    private static final String ISSUE = "/repos/octocat/Hello-World/issues/1347";
+
+    private static final IssueID ISSUE_ID = IssueID.builder()
+        .repoUser("octocat")
+        .repoName("Hello-World")
+        .issueNumber(1347)
+        .build();
+
+    private WireMockServer wireMockServer;
+    private HttpTransport httpTransport;
+    private RestTool restTool;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(options().dynamicPort());
+        wireMockServer.start();
+
+        wireMockServer.stubFor(get(urlEqualTo(ISSUE)).willReturn(aResponse().withStatus(200)
+            .withFixedDelay(300)
+            .withBody("{\"number\": 1347, \"title\": \"Found a bug\"}")));
+
+        httpTransport = new HttpTransport(4, 60);
+        restTool = new RestTool("http://localhost:" + wireMockServer.port() + "/",
+            new XMLGitHubRepository("octocat", "Hello-World", new XMLCredentials("octocat", "secret")),
+            httpTransport, null);
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        httpTransport.close();
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void concurrentLookupsShareOneRequest() throws InterruptedException, ExecutionException {
+
+        InFlightIssueRequests issueRequests = new InFlightIssueRequests();
+
+        CompletableFuture<JSONIssue> first = CompletableFuture.supplyAsync(() -> request(issueRequests));
+        CompletableFuture<JSONIssue> second = CompletableFuture.supplyAsync(() -> request(issueRequests));
+
+        assertEquals("Found a bug", first.get().getTitle());
+        assertEquals("Found a bug", second.get().getTitle());
+
+        // Until the issue is imported, the response is kept:
+        assertEquals("Found a bug", request(issueRequests).getTitle());
+
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo(ISSUE)));
+        assertEquals(1, issueRequests.getSentRequests());
+        assertEquals(2, issueRequests.getSharedRequests());
+    }
+
+    @Test
+    public void removedIssuesAreRequestedAgain() {
+
+        InFlightIssueRequests issueRequests = new InFlightIssueRequests();
+
+        request(issueRequests);
+        issueRequests.remove(ISSUE_ID);
+        request(issueRequests);
+
+        wireMockServer.verify(2, getRequestedFor(urlEqualTo(ISSUE)));
+    }
+
+    @Test
+    public void failuresAreNotKept() {
+
+        IssueID missingIssueID = IssueID.builder()
+            .repoUser("octocat")
+            .repoName("Hello-World")
+            .issueNumber(1)
+            .build();
+
+        wireMockServer.stubFor(get(urlEqualTo("/repos/octocat/Hello-World/issues/1")).willReturn(aResponse()
+            .withStatus(404)));
+
+        InFlightIssueRequests issueRequests = new InFlightIssueRequests();
+
+        // Another repository may request the issue with credentials which can access it:
+        for (int i = 0; i < 2; i++) {
+            assertThrows(RequestFailedException.class,
+                () -> issueRequests.request(missingIssueID, "octocat", "Hello-World", 1, restTool));
+        }
+
+        wireMockServer.verify(2, getRequestedFor(urlEqualTo("/repos/octocat/Hello-World/issues/1")));
+    }
+
+    @Test
+    public void errorsAreNotKept() {
+
+        InFlightIssueRequests issueRequests = new InFlightIssueRequests();
+
+        RestTool brokenRestTool = new RestTool("http://localhost:" + wireMockServer.port() + "/",
+            new XMLGitHubRepository("octocat", "Hello-World", new XMLCredentials("octocat", "secret")),
+            httpTransport, null) {
+            @Override
+            public JSONIssue requestIssueByRepositoryAndNumber(String repoUser, String repoName, int issueNumber) {
+                throw new StackOverflowError();
+            }
+        };
+
+        assertThrows(StackOverflowError.class,
+            () -> issueRequests.request(ISSUE_ID, "octocat", "Hello-World", 1347, brokenRestTool));
+
+        // The next lookup must not wait for the failed request:
+        assertEquals("Found a bug",
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> request(issueRequests)).getTitle());
+    }
+
+    private JSONIssue request(InFlightIssueRequests issueRequests) {
+
+        try {
+            return issueRequests.request(ISSUE_ID, "octocat", "Hello-World", 1347, restTool);
+        } catch (IOException | RequestFailedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
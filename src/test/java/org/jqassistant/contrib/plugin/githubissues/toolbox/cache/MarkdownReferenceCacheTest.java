@@ -0,0 +1,45 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox.cache;
+
+import org.jqassistant.contrib.plugin.githubissues.toolbox.MarkdownReferences;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MarkdownReferenceCacheTest {
+
+    private static final String CONTEXT = "LOCAL\noctocat/Hello-World";
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void referencesSurviveSaving() {
+
+        MarkdownReferences references = new MarkdownReferences();
+        references.addIssue("octocat", "Hello-World", 12);
+        references.addCommit("octocat", "Hello-World", "7fd1a60b01f91b314f59955a4e4d4e80d8edf11d");
+        references.addUser("octocat");
+
+        File file = new File(directory, "markdown-references.bin");
+
+        MarkdownReferenceCache cache = new MarkdownReferenceCache(file);
+        cache.put("Fixes #12", CONTEXT, references);
+        cache.save();
+
+        assertEquals(references, new MarkdownReferenceCache(file).get("Fixes #12", CONTEXT));
+    }
+
+    @Test
+    public void referencesAreKeyedByContext() {
+
+        MarkdownReferenceCache cache = new MarkdownReferenceCache();
+        cache.put("Fixes #12", CONTEXT, new MarkdownReferences());
+
+        assertNull(cache.get("Fixes #12", "LOCAL\noctocat/Spoon-Knife"));
+        assertNull(cache.get("Fixes #13", CONTEXT));
+    }
+}
@@ -0,0 +1,81 @@
+package org.jqassistant.contrib.plugin.githubissues.toolbox.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UnresolvableReferenceCacheTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void entriesSurviveReopening() {
+
+        File file = new File(directory, "unresolvable-references.bin");
+
+        UnresolvableReferenceCache cache = new UnresolvableReferenceCache(file, DAY);
+        cache.putIssue("user", "octocat", "Hello-World", 1347);
+        cache.save();
+
+        UnresolvableReferenceCache reopened = new UnresolvableReferenceCache(file, DAY);
+        assertTrue(reopened.isUnresolvable("user", "octocat", "Hello-World", 1347));
+        assertFalse(reopened.isUnresolvable("user", "octocat", "Hello-World", 1));
+    }
+
+    @Test
+    public void aRepositoryCoversAllOfItsIssues() {
+
+        UnresolvableReferenceCache cache = new UnresolvableReferenceCache(DAY);
+        cache.putRepository("user", "octocat", "Private-Repository");
+
+        // Owners and names of repositories are case-insensitive:
+        assertTrue(cache.isUnresolvable("user", "Octocat", "private-repository", 1));
+        assertTrue(cache.isUnresolvable("user", "octocat", "Private-Repository", 2));
+        assertFalse(cache.isUnresolvable("user", "octocat", "Hello-World", 1));
+    }
+
+    @Test
+    public void entriesExpire() throws InterruptedException {
+
+        UnresolvableReferenceCache cache = new UnresolvableReferenceCache(50);
+        cache.putIssue("user", "octocat", "Hello-World", 1347);
+
+        assertTrue(cache.isUnresolvable("user", "octocat", "Hello-World", 1347));
+        Thread.sleep(100);
+        assertFalse(cache.isUnresolvable("user", "octocat", "Hello-World", 1347));
+    }
+
+    @Test
+    public void nothingIsKeptWithoutTimeToLive() {
+
+        UnresolvableReferenceCache cache = new UnresolvableReferenceCache(0);
+        cache.putRepository("user", "octocat", "Private-Repository");
+
+        assertFalse(cache.isUnresolvable("user", "octocat", "Private-Repository", 1));
+    }
+
+    @Test
+    public void entriesOnlyApplyToTheirCredentials() {
+
+        File file = new File(directory, "unresolvable-references.bin");
+
+        UnresolvableReferenceCache cache = new UnresolvableReferenceCache(file, DAY);
+        cache.putRepository("user", "octocat", "Private-Repository");
+        cache.putIssue("user", "octocat", "Hello-World", 1347);
+        cache.save();
+
+        // The credentials of another repository may be able to access them:
+        UnresolvableReferenceCache reopened = new UnresolvableReferenceCache(file, DAY);
+        assertTrue(reopened.isUnresolvable("User", "octocat", "Private-Repository", 1));
+        assertTrue(reopened.isUnresolvable("user", "octocat", "Hello-World", 1347));
+        assertFalse(reopened.isUnresolvable("other-user", "octocat", "Private-Repository", 1));
+        assertFalse(reopened.isUnresolvable("other-user", "octocat", "Hello-World", 1347));
+    }
+}
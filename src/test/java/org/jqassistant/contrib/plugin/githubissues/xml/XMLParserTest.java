@@ -3,6 +3,7 @@ package org.jqassistant.contrib.plugin.githubissues.xml;
 import org.jdom2.JDOMException;
 import org.jqassistant.contrib.plugin.githubissues.jdom.XMLGitHubRepository;
 import org.jqassistant.contrib.plugin.githubissues.jdom.XMLParser;
+import org.jqassistant.contrib.plugin.githubissues.jdom.XMLScanOptions;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
@@ -10,6 +11,8 @@ import java.io.IOException;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class XMLParserTest {
 
@@ -38,5 +41,68 @@ public class XMLParserTest {
 
         assertEquals("other-github-user", gitHubRepositoryList.get(0).getCredentials().getUser());
         assertEquals("secret", gitHubRepositoryList.get(0).getCredentials().getPassword());
+        assertEquals(XMLGitHubRepository.Markdown.API, gitHubRepositoryList.get(0).getMarkdown());
+    }
+
+    @Test
+    public void readMarkdownSetting() throws JDOMException, IOException {
+
+        String xml = VALID_XML.replace("</github-repository>", "<markdown>local</markdown></github-repository>");
+
+        List<XMLGitHubRepository> gitHubRepositoryList =
+                XMLParser.parseConfiguration(new ByteArrayInputStream(xml.getBytes()));
+
+        assertEquals(XMLGitHubRepository.Markdown.LOCAL, gitHubRepositoryList.get(0).getMarkdown());
+    }
+
+    @Test
+    public void readScanOptions() throws JDOMException, IOException {
+
+        XMLScanOptions defaults = XMLParser.parseScanOptions(new ByteArrayInputStream(VALID_XML.getBytes()));
+
+        assertEquals(4, defaults.getCommentThreads());
+        assertEquals(1, defaults.getRepositoryThreads());
+        assertEquals(20, defaults.getHttpConnections());
+        assertEquals(1, defaults.getPageFanOut());
+        assertEquals(1, defaults.getPagePrefetch());
+        assertEquals(XMLScanOptions.Engine.REST, defaults.getEngine());
+        assertEquals(XMLScanOptions.ThreadMode.PLATFORM, defaults.getThreadMode());
+        assertEquals(0, defaults.getCommitIssues());
+        assertEquals(0, defaults.getCommitDescriptors());
+        assertEquals(24, defaults.getUnresolvableReferenceTtl());
+        assertEquals(XMLScanOptions.StoreWriter.XO, defaults.getStoreWriter());
+        assertFalse(defaults.isIncremental());
+
+        String xml = "<github-issues-configuration>\n" +
+            "    <comment-threads>8</comment-threads>\n" +
+            "    <repository-threads>3</repository-threads>\n" +
+            "    <http-connections>40</http-connections>\n" +
+            "    <http-keep-alive>30</http-keep-alive>\n" +
+            "    <page-fan-out>4</page-fan-out>\n" +
+            "    <page-prefetch>0</page-prefetch>\n" +
+            "    <engine>graphql</engine>\n" +
+            "    <thread-mode>virtual</thread-mode>\n" +
+            "    <commit-issues>500</commit-issues>\n" +
+            "    <commit-descriptors>10000</commit-descriptors>\n" +
+            "    <unresolvable-reference-ttl>0</unresolvable-reference-ttl>\n" +
+            "    <store-writer>cypher</store-writer>\n" +
+            "    <incremental>true</incremental>\n" +
+            "</github-issues-configuration>";
+
+        XMLScanOptions options = XMLParser.parseScanOptions(new ByteArrayInputStream(xml.getBytes()));
+
+        assertEquals(8, options.getCommentThreads());
+        assertEquals(3, options.getRepositoryThreads());
+        assertEquals(40, options.getHttpConnections());
+        assertEquals(30, options.getHttpKeepAlive());
+        assertEquals(4, options.getPageFanOut());
+        assertEquals(0, options.getPagePrefetch());
+        assertEquals(XMLScanOptions.Engine.GRAPHQL, options.getEngine());
+        assertEquals(XMLScanOptions.ThreadMode.VIRTUAL, options.getThreadMode());
+        assertEquals(500, options.getCommitIssues());
+        assertEquals(10000, options.getCommitDescriptors());
+        assertEquals(0, options.getUnresolvableReferenceTtl());
+        assertEquals(XMLScanOptions.StoreWriter.CYPHER, options.getStoreWriter());
+        assertTrue(options.isIncremental());
     }
 }